@@ -0,0 +1,10 @@
+package studio.carbonylgroup.textfieldboxes.benchmark;
+
+import android.support.v7.app.AppCompatActivity;
+
+/**
+ * Text Field Boxes
+ * An empty host for the benchmarks, the views under test are built by the benchmarks themselves.
+ */
+public class BenchmarkActivity extends AppCompatActivity {
+}
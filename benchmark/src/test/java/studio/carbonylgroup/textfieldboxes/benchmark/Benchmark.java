@@ -0,0 +1,31 @@
+package studio.carbonylgroup.textfieldboxes.benchmark;
+
+/**
+ * Text Field Boxes
+ * Times one operation: a warm-up so the JIT settles, then every measured iteration is timed on its own
+ * so the report can give the median and the tail instead of only an average.
+ */
+class Benchmark {
+
+    static final int DEFAULT_WARMUP = 200;
+    static final int DEFAULT_ITERATIONS = 1000;
+
+    static BenchmarkResult run(String name, Runnable operation) {
+        return run(name, DEFAULT_WARMUP, DEFAULT_ITERATIONS, operation);
+    }
+
+    static BenchmarkResult run(String name, int warmup, int iterations, Runnable operation) {
+
+        for (int i = 0; i < warmup; i++) operation.run();
+
+        long[] samples = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            operation.run();
+            samples[i] = System.nanoTime() - start;
+        }
+        BenchmarkResult result = new BenchmarkResult(name, samples);
+        BenchmarkReport.add(result);
+        return result;
+    }
+}
@@ -0,0 +1,49 @@
+package studio.carbonylgroup.textfieldboxes.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Text Field Boxes
+ * Collects the results of a run and writes them as JSON to
+ * &lt;benchmark.reportDir&gt;/textfieldboxes-benchmark.json, for CI to compare against the previous release.
+ */
+class BenchmarkReport {
+
+    static final String FILE_NAME = "textfieldboxes-benchmark.json";
+
+    private static final List<BenchmarkResult> results = new ArrayList<>();
+
+    static synchronized void add(BenchmarkResult result) {
+        results.add(result);
+    }
+
+    static synchronized void write(int sdk) throws IOException {
+
+        File dir = new File(System.getProperty("benchmark.reportDir", "build/reports/benchmark"));
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("cannot create " + dir);
+
+        StringBuilder json = new StringBuilder();
+        json.append(String.format(Locale.US,
+                "{\"timestamp\":%d,\"sdk\":%d,\"java\":\"%s\",\"benchmarks\":[",
+                System.currentTimeMillis(), sdk, System.getProperty("java.version")));
+        for (int i = 0; i < results.size(); i++) {
+            if (i > 0) json.append(',');
+            json.append('\n').append(results.get(i).toJson());
+        }
+        json.append("\n]}\n");
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(new File(dir, FILE_NAME)), "UTF-8");
+        try {
+            writer.write(json.toString());
+        } finally {
+            writer.close();
+        }
+    }
+}
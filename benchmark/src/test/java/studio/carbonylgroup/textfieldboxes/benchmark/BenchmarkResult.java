@@ -0,0 +1,38 @@
+package studio.carbonylgroup.textfieldboxes.benchmark;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Text Field Boxes
+ * The timings of one benchmark, in nanoseconds per operation.
+ */
+class BenchmarkResult {
+
+    final String name;
+    final int iterations;
+    final long minNs;
+    final long medianNs;
+    final long p90Ns;
+    final long meanNs;
+
+    BenchmarkResult(String name, long[] samples) {
+
+        this.name = name;
+        this.iterations = samples.length;
+        long[] sorted = Arrays.copyOf(samples, samples.length);
+        Arrays.sort(sorted);
+        long sum = 0;
+        for (long sample : sorted) sum += sample;
+        this.minNs = sorted[0];
+        this.medianNs = sorted[sorted.length / 2];
+        this.p90Ns = sorted[(int) Math.min(sorted.length - 1, Math.ceil(sorted.length * 0.9) - 1)];
+        this.meanNs = sum / sorted.length;
+    }
+
+    String toJson() {
+        return String.format(Locale.US,
+                "{\"name\":\"%s\",\"iterations\":%d,\"minNs\":%d,\"medianNs\":%d,\"p90Ns\":%d,\"meanNs\":%d}",
+                this.name, this.iterations, this.minNs, this.medianNs, this.p90Ns, this.meanNs);
+    }
+}
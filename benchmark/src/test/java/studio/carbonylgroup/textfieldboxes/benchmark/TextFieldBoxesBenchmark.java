@@ -0,0 +1,156 @@
+package studio.carbonylgroup.textfieldboxes.benchmark;
+
+import android.text.Editable;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import studio.carbonylgroup.textfieldboxes.TextFieldBoxes;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Text Field Boxes
+ * Benchmarks of the TextFieldBoxes hot paths, run on the JVM under Robolectric:
+ * ./gradlew :benchmark:testDebugUnitTest
+ * <p>
+ * The absolute numbers don't match a device, they are meant to be compared from one run to the next.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = TextFieldBoxesBenchmark.SDK)
+public class TextFieldBoxesBenchmark {
+
+    static final int SDK = 25;
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    private BenchmarkActivity activity;
+    private FrameLayout container;
+    private LayoutInflater inflater;
+
+    @Before
+    public void setUp() {
+
+        this.activity = Robolectric.setupActivity(BenchmarkActivity.class);
+        this.container = new FrameLayout(this.activity);
+        this.activity.setContentView(this.container);
+        this.inflater = LayoutInflater.from(this.activity);
+    }
+
+    @AfterClass
+    public static void writeReport() throws Exception {
+        BenchmarkReport.write(SDK);
+    }
+
+    private TextFieldBoxes attachField() {
+
+        TextFieldBoxes field = (TextFieldBoxes) this.inflater.inflate(R.layout.benchmark_field, this.container, false);
+        this.container.addView(field);
+        measureAndLayout(field);
+        return field;
+    }
+
+    private static void measureAndLayout(View view) {
+
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.AT_MOST));
+        view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+    }
+
+    /**
+     * mark the whole subtree for layout so the next pass doesn't hit the measure cache
+     */
+    private static void forceLayout(View view) {
+
+        view.forceLayout();
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) forceLayout(group.getChildAt(i));
+        }
+    }
+
+    @Test
+    public void inflate() {
+
+        BenchmarkResult result = Benchmark.run("inflate", 50, 300, new Runnable() {
+            @Override
+            public void run() {
+                inflater.inflate(R.layout.benchmark_field, container, false);
+            }
+        });
+        assertTrue(result.medianNs > 0);
+    }
+
+    @Test
+    public void measureAndLayout() {
+
+        final TextFieldBoxes field = attachField();
+        BenchmarkResult result = Benchmark.run("measureAndLayout", new Runnable() {
+            @Override
+            public void run() {
+                forceLayout(field);
+                measureAndLayout(field);
+            }
+        });
+        assertTrue(result.medianNs > 0);
+    }
+
+    @Test
+    public void keystroke() {
+
+        final TextFieldBoxes field = attachField();
+        field.setHasFocus(true);
+        final Editable editable = field.getEditText().getText();
+        BenchmarkResult result = Benchmark.run("keystroke", new Runnable() {
+            @Override
+            public void run() {
+                /* type up to 32 characters, then start over */
+                if (editable.length() < 32) editable.append('a');
+                else editable.clear();
+            }
+        });
+        assertTrue(result.medianNs > 0);
+    }
+
+    @Test
+    public void focusToggle() {
+
+        final TextFieldBoxes field = attachField();
+        BenchmarkResult result = Benchmark.run("focusToggle", new Runnable() {
+            @Override
+            public void run() {
+                field.setHasFocus(true);
+                field.setHasFocus(false);
+            }
+        });
+        assertTrue(result.medianNs > 0);
+    }
+
+    @Test
+    public void prefixSuffix() {
+
+        final TextFieldBoxes field = attachField();
+        field.setText("100");
+        BenchmarkResult result = Benchmark.run("prefixSuffix", new Runnable() {
+            private boolean toggle;
+
+            @Override
+            public void run() {
+                toggle = !toggle;
+                field.setPrefix(toggle ? "$" : "US$");
+                field.setSuffix(toggle ? "kg" : "lb");
+            }
+        });
+        assertTrue(result.medianNs > 0);
+    }
+}
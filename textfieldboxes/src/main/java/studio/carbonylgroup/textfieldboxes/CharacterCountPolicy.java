@@ -0,0 +1,344 @@
+package studio.carbonylgroup.textfieldboxes;
+
+import java.text.BreakIterator;
+import java.text.CharacterIterator;
+
+/**
+ * Text Field Boxes
+ * How the counter of a TextFieldBoxes counts the text, see TextFieldBoxes.setCharacterCountPolicy().
+ * The count is kept up to date from the edited range only: on each change the range is widened
+ * with getRangeStart() and getRangeEnd() to the units the edit can affect, counted before the change,
+ * counted again after it, and the difference is applied. A policy must therefore give the same total
+ * when counting a text whole or in pieces split at the offsets returned by these two methods.
+ */
+public abstract class CharacterCountPolicy {
+
+    /**
+     * UTF-16 code units, not counting spaces and line feeds. The default, as the counter always did.
+     */
+    public static final CharacterCountPolicy DEFAULT = new CharacterCountPolicy() {
+        @Override
+        public int count(CharSequence text, int start, int end) {
+
+            int count = 0;
+            for (int i = start; i < end; i++) {
+                char c = text.charAt(i);
+                if (c != ' ' && c != '\n') count++;
+            }
+            return count;
+        }
+    };
+
+    /**
+     * UTF-16 code units, what String.length() returns
+     */
+    public static final CharacterCountPolicy UTF16_UNITS = new CharacterCountPolicy() {
+        @Override
+        public int count(CharSequence text, int start, int end) {
+            return end - start;
+        }
+    };
+
+    /**
+     * Unicode code points, an emoji outside the BMP counts as one
+     */
+    public static final CharacterCountPolicy CODE_POINTS = new SurrogateAwarePolicy() {
+        @Override
+        public int count(CharSequence text, int start, int end) {
+            return Character.codePointCount(text, start, end);
+        }
+    };
+
+    /**
+     * the length in bytes once encoded in UTF-8, for backends limiting the byte length.
+     * an unpaired surrogate counts as 3 bytes
+     */
+    public static final CharacterCountPolicy UTF8_BYTES = new SurrogateAwarePolicy() {
+        @Override
+        public int count(CharSequence text, int start, int end) {
+
+            int bytes = 0;
+            for (int i = start; i < end; i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) bytes += 1;
+                else if (c < 0x800) bytes += 2;
+                else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    bytes += 4;
+                    i++;
+                } else bytes += 3;
+            }
+            return bytes;
+        }
+    };
+
+    /**
+     * user-perceived characters (grapheme clusters): an emoji with its modifiers
+     * or a letter with its combining marks counts as one
+     */
+    public static final CharacterCountPolicy GRAPHEME_CLUSTERS = new GraphemePolicy();
+
+    /**
+     * @return the number of units between start and end, start being a boundary given by getRangeStart()
+     */
+    public abstract int count(CharSequence text, int start, int end);
+
+    /**
+     * @return the offset at or before start to count from, so that an edit at start
+     * can't change how the text before the returned offset is counted
+     */
+    public int getRangeStart(CharSequence text, int start) {
+        return start;
+    }
+
+    /**
+     * @return the offset at or after end to count to, so that an edit at end
+     * can't change how the text after the returned offset is counted
+     */
+    public int getRangeEnd(CharSequence text, int end) {
+        return end;
+    }
+
+    /**
+     * keeps the surrogate pairs around the edit whole, so that an edit splitting or
+     * joining a pair is counted right
+     */
+    private abstract static class SurrogateAwarePolicy extends CharacterCountPolicy {
+
+        @Override
+        public int getRangeStart(CharSequence text, int start) {
+            return start > 0 && Character.isHighSurrogate(text.charAt(start - 1)) ? start - 1 : start;
+        }
+
+        @Override
+        public int getRangeEnd(CharSequence text, int end) {
+            return end < text.length() && Character.isLowSurrogate(text.charAt(end)) ? end + 1 : end;
+        }
+    }
+
+    /**
+     * counts with a character BreakIterator, widening the range by two clusters on each side
+     * since an insertion can join or split the clusters next to it, and to the whole run of
+     * regional indicators around the edit, as flags are paired from the start of their run.
+     * each thread gets its own BreakIterator, the constant can be shared
+     * <p>
+     * BreakIterator.setText() copies the whole text before API 24, so above WINDOW_THRESHOLD
+     * characters it is only given the range to count or the offset to widen, with WINDOW_MARGIN
+     * characters of context on each side. a cluster longer than WINDOW_MARGIN, e.g. hundreds
+     * of stacked combining marks, may then be counted as more than one
+     */
+    private static class GraphemePolicy extends CharacterCountPolicy {
+
+        static final int WINDOW_THRESHOLD = 2048;
+        static final int WINDOW_MARGIN = 128;
+
+        private final ThreadLocal<GraphemeIterator> iterators = new ThreadLocal<GraphemeIterator>() {
+            @Override
+            protected GraphemeIterator initialValue() {
+                return new GraphemeIterator();
+            }
+        };
+
+        /**
+         * @return an iterator over the characters from start to end, its offsets are relative to start
+         */
+        private BreakIterator iterate(CharSequence text, int start, int end) {
+            return this.iterators.get().iterate(text, start, end);
+        }
+
+        private static boolean isWindowed(CharSequence text) {
+            return text.length() > WINDOW_THRESHOLD;
+        }
+
+        @Override
+        public int count(CharSequence text, int start, int end) {
+
+            if (start >= end) return 0;
+            int windowStart = isWindowed(text) ? Math.max(0, start - WINDOW_MARGIN) : 0;
+            int windowEnd = isWindowed(text) ? Math.min(text.length(), end + WINDOW_MARGIN) : text.length();
+            BreakIterator iterator = iterate(text, windowStart, windowEnd);
+            int count = 0;
+            for (int offset = start - windowStart; offset < end - windowStart && offset != BreakIterator.DONE;
+                 offset = iterator.following(offset))
+                count++;
+            return count;
+        }
+
+        @Override
+        public int getRangeStart(CharSequence text, int start) {
+
+            if (start <= 0) return 0;
+            int windowStart = isWindowed(text) ? Math.max(0, start - WINDOW_MARGIN) : 0;
+            int windowEnd = isWindowed(text) ? Math.min(text.length(), start + WINDOW_MARGIN) : text.length();
+            BreakIterator iterator = iterate(text, windowStart, windowEnd);
+            int boundary = iterator.preceding(start - windowStart);
+            if (boundary > 0) boundary = iterator.preceding(boundary);
+            if (boundary == BreakIterator.DONE) boundary = 0;
+            return Math.min(windowStart + boundary, regionalIndicatorRunStart(text, start));
+        }
+
+        @Override
+        public int getRangeEnd(CharSequence text, int end) {
+
+            if (end >= text.length()) return text.length();
+            int windowStart = isWindowed(text) ? Math.max(0, end - WINDOW_MARGIN) : 0;
+            int windowEnd = isWindowed(text) ? Math.min(text.length(), end + WINDOW_MARGIN) : text.length();
+            int windowLength = windowEnd - windowStart;
+            BreakIterator iterator = iterate(text, windowStart, windowEnd);
+            int boundary = iterator.following(end - windowStart);
+            if (boundary != BreakIterator.DONE && boundary < windowLength) boundary = iterator.following(boundary);
+            if (boundary == BreakIterator.DONE) boundary = windowLength;
+            return Math.max(Math.max(windowStart + boundary, regionalIndicatorRunEnd(text, end)),
+                    combiningRunEnd(text, end));
+        }
+    }
+
+    /**
+     * @return whether a regional indicator, as a surrogate pair, starts at the index
+     */
+    static boolean isRegionalIndicatorAt(CharSequence text, int index) {
+
+        if (index < 0 || index + 1 >= text.length() || text.charAt(index) != '\uD83C') return false;
+        char low = text.charAt(index + 1);
+        return low >= '\uDDE6' && low <= '\uDDFF';
+    }
+
+    /**
+     * @return the start of the run of regional indicators the offset is in or right after, the offset if none
+     */
+    static int regionalIndicatorRunStart(CharSequence text, int offset) {
+
+        if (isRegionalIndicatorAt(text, offset - 1)) offset--;
+        while (isRegionalIndicatorAt(text, offset - 2)) offset -= 2;
+        return offset;
+    }
+
+    /**
+     * @return the end of the run of regional indicators the offset is in or right before, the offset if none
+     */
+    static int regionalIndicatorRunEnd(CharSequence text, int offset) {
+
+        if (isRegionalIndicatorAt(text, offset - 1)) offset++;
+        while (isRegionalIndicatorAt(text, offset)) offset += 2;
+        return offset;
+    }
+
+    /**
+     * @return the end of the run of combining marks and joiners starting at the offset, the offset if none.
+     * an edit can give them a new base, and some segmentations split such a run after a line feed
+     */
+    static int combiningRunEnd(CharSequence text, int offset) {
+
+        while (offset < text.length()) {
+            char c = text.charAt(offset);
+            int type = Character.getType(c);
+            if (type == Character.NON_SPACING_MARK || type == Character.ENCLOSING_MARK
+                    || type == Character.COMBINING_SPACING_MARK || c == '\u200D') offset++;
+            else break;
+        }
+        return offset;
+    }
+
+    /**
+     * a BreakIterator reading a CharSequence, used by one thread
+     */
+    private static class GraphemeIterator {
+
+        private final BreakIterator breakIterator = BreakIterator.getCharacterInstance();
+        private final CharSequenceIterator textIterator = new CharSequenceIterator();
+
+        BreakIterator iterate(CharSequence text, int start, int end) {
+
+            this.textIterator.setText(text, start, end);
+            this.breakIterator.setText(this.textIterator);
+            return this.breakIterator;
+        }
+    }
+
+    /**
+     * a CharacterIterator over a range of a CharSequence, so the BreakIterator reads the Editable
+     * without a copy. its indices are relative to the start of the range
+     */
+    private static class CharSequenceIterator implements CharacterIterator {
+
+        private CharSequence text = "";
+        private int start = 0;
+        private int length = 0;
+        private int index = 0;
+
+        void setText(CharSequence text, int start, int end) {
+
+            this.text = text;
+            this.start = start;
+            this.length = end - start;
+            this.index = 0;
+        }
+
+        @Override
+        public char first() {
+
+            this.index = 0;
+            return current();
+        }
+
+        @Override
+        public char last() {
+
+            this.index = Math.max(0, this.length - 1);
+            return current();
+        }
+
+        @Override
+        public char current() {
+            return this.index < this.length ? this.text.charAt(this.start + this.index) : DONE;
+        }
+
+        @Override
+        public char next() {
+
+            if (this.index < this.length) this.index++;
+            return current();
+        }
+
+        @Override
+        public char previous() {
+
+            if (this.index == 0) return DONE;
+            this.index--;
+            return current();
+        }
+
+        @Override
+        public char setIndex(int position) {
+
+            if (position < 0 || position > this.length) throw new IllegalArgumentException();
+            this.index = position;
+            return current();
+        }
+
+        @Override
+        public int getBeginIndex() {
+            return 0;
+        }
+
+        @Override
+        public int getEndIndex() {
+            return this.length;
+        }
+
+        @Override
+        public int getIndex() {
+            return this.index;
+        }
+
+        @Override
+        public Object clone() {
+
+            CharSequenceIterator clone = new CharSequenceIterator();
+            clone.text = this.text;
+            clone.start = this.start;
+            clone.length = this.length;
+            clone.index = this.index;
+            return clone;
+        }
+    }
+}
@@ -1,12 +1,15 @@
 package studio.carbonylgroup.textfieldboxes;
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.graphics.Canvas;
+import android.graphics.Outline;
 import android.graphics.Path;
-import android.graphics.Rect;
 import android.graphics.RectF;
+import android.os.Build;
 import android.util.AttributeSet;
-import android.widget.FrameLayout;
+import android.view.View;
+import android.view.ViewOutlineProvider;
 import android.widget.RelativeLayout;
 
 /**
@@ -17,7 +20,6 @@ public class ClipToBoundsView extends RelativeLayout {
 
     Context context;
     Float cornerRadius;
-    Rect rect = new Rect();
     RectF rectF = new RectF();
     Path clipPath = new Path();
 
@@ -43,17 +45,48 @@ public class ClipToBoundsView extends RelativeLayout {
     }
 
     protected void init() {
+
         cornerRadius = context.getResources().getDimension(R.dimen.text_field_boxes_corner_radius);
+
+        /* clip to a rounded outline where supported, instead of clipping the canvas every frame */
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            setOutlineProvider(new RoundRectOutlineProvider(cornerRadius));
+            setClipToOutline(true);
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            rectF.set(0, 0, w, h);
+            clipPath.reset();
+            clipPath.addRoundRect(rectF, cornerRadius, cornerRadius, Path.Direction.CW);
+        }
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
 
-        canvas.getClipBounds(rect);
-        rectF.set(rect);
-        clipPath.reset();
-        clipPath.addRoundRect(rectF, cornerRadius, cornerRadius, Path.Direction.CW);
-        canvas.clipPath(clipPath);
+        long metricsStart = TextFieldBoxesMetrics.begin(TextFieldBoxesMetrics.CLIP_DRAW);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) canvas.clipPath(clipPath);
         super.onDraw(canvas);
+        TextFieldBoxesMetrics.end(this, TextFieldBoxesMetrics.CLIP_DRAW, metricsStart);
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static class RoundRectOutlineProvider extends ViewOutlineProvider {
+
+        private final float cornerRadius;
+
+        private RoundRectOutlineProvider(float cornerRadius) {
+            this.cornerRadius = cornerRadius;
+        }
+
+        @Override
+        public void getOutline(View view, Outline outline) {
+            outline.setRoundRect(0, 0, view.getWidth(), view.getHeight(), cornerRadius);
+        }
     }
 }
@@ -0,0 +1,82 @@
+package studio.carbonylgroup.textfieldboxes;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+
+import java.util.WeakHashMap;
+
+/**
+ * Text Field Boxes
+ * The default colors resolved from a theme, cached per Resources.Theme so that
+ * every TextFieldBoxes after the first one on a screen reuses them.
+ * An entry is resolved again once the configuration changed.
+ */
+class DefaultPalette {
+
+    private static final WeakHashMap<Resources.Theme, DefaultPalette> cache = new WeakHashMap<>();
+
+    final int errorColor;
+    final int primaryColor;
+    final int textColor;
+    final int disabledTextColor;
+    final int bgColor;
+    final Configuration configuration;
+
+    private DefaultPalette(Context context) {
+
+        Resources.Theme theme = context.getTheme();
+        this.configuration = new Configuration(context.getResources().getConfiguration());
+
+        /* Get Default Error Color From Theme */
+        this.errorColor = context.getResources().getColor(R.color.A400red);
+
+        TypedArray themeArray = theme.obtainStyledAttributes(new int[]{
+                android.R.attr.colorForeground,
+                R.attr.colorPrimary,
+                android.R.attr.textColorTertiary,
+                android.R.attr.disabledAlpha});
+
+        /* Get Default Background Color From Theme */
+        this.bgColor = Utils.adjustAlpha(themeArray.getColor(0, 0), 0.06f);
+
+        /* Get Default Primary Color From Theme */
+        if (Utils.isLight(this.bgColor)) this.primaryColor = Utils.lighter(themeArray.getColor(1, 0), 0.2f);
+        else this.primaryColor = themeArray.getColor(1, 0);
+
+        /* Get Default Text Color From Theme */
+        this.textColor = themeArray.getColor(2, 0);
+
+        /* Get Default Disabled Text Color From Theme */
+        this.disabledTextColor = Utils.adjustAlpha(this.textColor, themeArray.getFloat(3, 0));
+
+        themeArray.recycle();
+    }
+
+    /**
+     * @return the cached palette of the context theme, resolved if missing or out of date
+     */
+    static DefaultPalette obtain(Context context) {
+
+        Resources.Theme theme = context.getTheme();
+        synchronized (cache) {
+            DefaultPalette palette = cache.get(theme);
+            if (palette == null || !palette.configuration.equals(context.getResources().getConfiguration())) {
+                palette = new DefaultPalette(context);
+                cache.put(theme, palette);
+            }
+            return palette;
+        }
+    }
+
+    /**
+     * drop the cached palette of the theme, e.g. after Theme.applyStyle()
+     */
+    static void invalidate(Resources.Theme theme) {
+
+        synchronized (cache) {
+            cache.remove(theme);
+        }
+    }
+}
@@ -6,6 +6,8 @@ import android.graphics.Canvas;
 import android.graphics.ColorFilter;
 import android.graphics.Paint;
 import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
 import android.support.v7.widget.AppCompatEditText;
 import android.util.AttributeSet;
@@ -22,6 +24,22 @@ public class ExtendedEditText extends AppCompatEditText {
     protected ColorStateList prefixTextColor;
     protected ColorStateList suffixTextColor;
 
+    /**
+     * the measured prefix and suffix widths, and the drawable that draws both of them.
+     */
+    protected int prefixWidth = -1;
+    protected int suffixWidth = 0;
+    private TextDrawable textDrawable;
+
+    /**
+     * the baselines of the first and the last line, where the prefix and the suffix are drawn.
+     * measured on the first draw after the text or the layout changed, not on every frame.
+     */
+    protected int prefixBaseline;
+    protected int suffixBaseline;
+    protected boolean baselinesValid = false;
+    private final Rect clipBounds = new Rect();
+
     public ExtendedEditText(Context context) {
         this(context, null);
     }
@@ -34,27 +52,31 @@ public class ExtendedEditText extends AppCompatEditText {
         super(context, attrs, defStyle);
     }
 
+    /**
+     * draws the prefix at the start and the suffix at the end,
+     * one per ExtendedEditText, reused whenever the prefix or the suffix changes
+     */
     private class TextDrawable extends Drawable {
 
-        private TextDrawable() {
-
-            setBounds(0, 0, (int) getPaint().measureText(prefixText) + 2, (int) getTextSize());
-            setPadding(0, 0, getPaddingRight() + (int) getPaint().measureText(suffixText) - 2, 0);
-        }
-
         @Override
         public void draw(Canvas canvas) {
 
-            final int lineBase = getLineBounds(0, null);
-            final int lineBottom = getLineBounds(getLineCount() - 1, null);
-            final float endX = getWidth() - getPaddingRight()
-                    + (int) getPaint().measureText(suffixText) - 2 - getPaint().measureText(suffixText);
+            long metricsStart = TextFieldBoxesMetrics.begin(TextFieldBoxesMetrics.DECORATION_DRAW);
+            if (!baselinesValid && getLayout() != null) {
+                prefixBaseline = getLineBounds(0, null);
+                suffixBaseline = getLineBounds(getLineCount() - 1, null);
+                baselinesValid = true;
+            }
+            final float endX = getWidth() - getPaddingRight() - 2;
+            canvas.getClipBounds(clipBounds);
 
             Paint paint = getPaint();
-            paint.setColor(prefixTextColor.getColorForState(getDrawableState(), 0));
-            canvas.drawText(prefixText, 0, canvas.getClipBounds().top + lineBase, paint);
-            paint.setColor(suffixTextColor.getColorForState(getDrawableState(), 0));
-            canvas.drawText(suffixText, endX, canvas.getClipBounds().top + lineBottom, paint);
+            int[] state = getDrawableState();
+            paint.setColor(prefixTextColor.getColorForState(state, 0));
+            canvas.drawText(prefixText, 0, clipBounds.top + prefixBaseline, paint);
+            paint.setColor(suffixTextColor.getColorForState(state, 0));
+            canvas.drawText(suffixText, endX, clipBounds.top + suffixBaseline, paint);
+            TextFieldBoxesMetrics.end(ExtendedEditText.this, TextFieldBoxesMetrics.DECORATION_DRAW, metricsStart);
         }
 
         @Override
@@ -69,16 +91,85 @@ public class ExtendedEditText extends AppCompatEditText {
         }
     }
 
+    @Override
+    protected void onTextChanged(CharSequence text, int start, int lengthBefore, int lengthAfter) {
+
+        super.onTextChanged(text, start, lengthBefore, lengthAfter);
+        baselinesValid = false;
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+
+        super.onLayout(changed, left, top, right, bottom);
+        baselinesValid = false;
+    }
+
+    @Override
+    public void setTextSize(int unit, float size) {
+
+        super.setTextSize(unit, size);
+        measureDecorations();
+    }
+
+    @Override
+    public void setTypeface(Typeface tf) {
+
+        super.setTypeface(tf);
+        /* also called from the TextView constructor, before the fields are set */
+        if (prefixText != null) measureDecorations();
+    }
+
+    /**
+     * measure the prefix and the suffix once per text or text size change,
+     * and only touch the drawable bounds or the padding if a width actually changed
+     */
+    protected void measureDecorations() {
+
+        if (textDrawable == null) return;
+
+        long metricsStart = TextFieldBoxesMetrics.begin(TextFieldBoxesMetrics.DECORATION_MEASURE);
+        int newPrefixWidth = (int) getPaint().measureText(prefixText);
+        int newSuffixWidth = (int) getPaint().measureText(suffixText);
+
+        if (newSuffixWidth != suffixWidth) {
+            /* the suffix is drawn in the extra right padding */
+            setPadding(getPaddingLeft(), getPaddingTop(),
+                    getPaddingRight() - suffixWidth + newSuffixWidth, getPaddingBottom());
+            suffixWidth = newSuffixWidth;
+        }
+
+        if (newPrefixWidth != prefixWidth || textDrawable.getBounds().bottom != (int) getTextSize()) {
+            /* the width of the start drawable moves the text after the prefix */
+            prefixWidth = newPrefixWidth;
+            textDrawable.setBounds(0, 0, prefixWidth + 2, (int) getTextSize());
+            setCompoundDrawables(textDrawable, null, null, null);
+        } else invalidate();
+        TextFieldBoxesMetrics.end(this, TextFieldBoxesMetrics.DECORATION_MEASURE, metricsStart);
+    }
+
+    protected void ensureTextDrawable() {
+
+        if (textDrawable != null) return;
+        textDrawable = new TextDrawable();
+        prefixWidth = -1;
+        /* matches the -2 the suffix is drawn at */
+        setPadding(getPaddingLeft(), getPaddingTop(), getPaddingRight() - 2, getPaddingBottom());
+        suffixWidth = 0;
+    }
+
     public void setPrefix(String _prefix) {
 
         prefixText = _prefix;
-        setCompoundDrawables(new TextDrawable(), null, null, null);
+        ensureTextDrawable();
+        measureDecorations();
     }
 
     public void setSuffix(String _suffix) {
 
         suffixText = _suffix;
-        setCompoundDrawables(new TextDrawable(), null, null, null);
+        ensureTextDrawable();
+        measureDecorations();
     }
 
     public void setPrefixTextColor(int color) {
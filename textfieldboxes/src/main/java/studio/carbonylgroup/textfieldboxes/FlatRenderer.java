@@ -0,0 +1,487 @@
+package studio.carbonylgroup.textfieldboxes;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.GradientDrawable;
+import android.graphics.drawable.RippleDrawable;
+import android.graphics.drawable.StateListDrawable;
+import android.os.Build;
+import android.support.v4.content.ContextCompat;
+import android.support.v4.graphics.drawable.DrawableCompat;
+import android.support.v4.view.ViewCompat;
+import android.support.v7.widget.AppCompatImageButton;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.TypedValue;
+import android.view.View;
+
+/**
+ * Text Field Boxes
+ * Draws the panel, bottom line, floating label, helper label and counter label directly
+ * onto the TextFieldBoxes, so that the ExtendedEditText (and the icons, once set)
+ * are the only real children. Geometry mirrors text_field_boxes_layout.xml,
+ * laid out from the right when the layout direction is RTL.
+ */
+class FlatRenderer {
+
+    protected final TextFieldBoxes host;
+
+    /* dimensions in pixels, taken from text_field_boxes_layout.xml */
+    protected final int iconSize;
+    protected final int iconMarginEnd;
+    protected final int iconMarginTop;
+    protected final int panelPadding;
+    protected final int labelMargin;
+    protected final int editTextMarginTop;
+    protected final int editTextMarginBottom;
+    protected final int buttonMarginStart;
+    protected final int bottomLineHeight;
+    protected final int bottomMarginTop;
+    protected final int helperMarginEnd;
+    protected final float cornerRadius;
+
+    protected final TextPaint labelPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    protected final TextPaint helperPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    protected final TextPaint counterPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    protected final Paint bottomLinePaint = new Paint();
+    protected final Paint.FontMetricsInt labelMetrics = new Paint.FontMetricsInt();
+    protected final Paint.FontMetricsInt bottomMetrics = new Paint.FontMetricsInt();
+
+    protected Drawable panelBackground;
+    protected Drawable panelForeground;
+
+    protected String labelText = "";
+    protected String helperText = "";
+    protected char[] counterChars = new char[0];
+    protected int counterLength = 0;
+    protected StaticLayout helperLayout;
+    protected int helperLayoutWidth = -1;
+    protected boolean bottomVisible = true;
+    protected boolean panelEnabled = true;
+
+    protected float labelProgress = 0f;
+    protected float labelTranslation;
+
+    protected final Rect panelRect = new Rect();
+    protected final RectF panelRectF = new RectF();
+    protected final Rect bottomLineRect = new Rect();
+    protected boolean rtl = false;
+
+    protected int measuredWidth;
+    protected int measuredHeight;
+    protected int panelWidth;
+    protected int panelHeight;
+    protected int iconSpace;
+    protected int bottomRowTop;
+
+    FlatRenderer(TextFieldBoxes host) {
+
+        this.host = host;
+        Context context = host.getContext();
+
+        this.iconSize = Utils.dp2px(context, 24);
+        this.iconMarginEnd = Utils.dp2px(context, 16);
+        this.iconMarginTop = Utils.dp2px(context, 20);
+        this.panelPadding = Utils.dp2px(context, 16);
+        this.labelMargin = Utils.dp2px(context, 20);
+        this.editTextMarginTop = Utils.dp2px(context, 32);
+        this.editTextMarginBottom = Utils.dp2px(context, 8);
+        this.buttonMarginStart = Utils.dp2px(context, 2);
+        this.bottomLineHeight = Utils.dp2px(context, 2);
+        this.bottomMarginTop = Utils.dp2px(context, 8);
+        this.helperMarginEnd = Utils.dp2px(context, 8);
+        this.cornerRadius = context.getResources().getDimension(R.dimen.text_field_boxes_corner_radius);
+        this.labelTranslation = -labelMargin
+                + context.getResources().getDimensionPixelOffset(R.dimen.text_field_boxes_margin_top);
+
+        float sp = context.getResources().getDisplayMetrics().scaledDensity;
+        this.labelPaint.setTextSize(16 * sp);
+        this.helperPaint.setTextSize(12 * sp);
+        this.counterPaint.setTextSize(12 * sp);
+        this.labelPaint.getFontMetricsInt(this.labelMetrics);
+        this.helperPaint.getFontMetricsInt(this.bottomMetrics);
+
+        this.panelBackground = ContextCompat.getDrawable(context, R.drawable.bg).mutate();
+        this.panelForeground = createPanelForeground(context);
+        if (this.panelForeground != null) this.panelForeground.setCallback(host);
+    }
+
+    protected static Drawable resolveDrawableAttr(Context context, int attr) {
+
+        TypedValue typedValue = new TypedValue();
+        if (!context.getTheme().resolveAttribute(attr, typedValue, true) || typedValue.resourceId == 0)
+            return null;
+        return ContextCompat.getDrawable(context, typedValue.resourceId);
+    }
+
+    /**
+     * the pressed feedback of the panel, rounded like the panel so that it needs no clipping.
+     * falls back to the plain selectableItemBackground if the theme has no colorControlHighlight
+     */
+    protected Drawable createPanelForeground(Context context) {
+
+        TypedValue typedValue = new TypedValue();
+        if (!context.getTheme().resolveAttribute(R.attr.colorControlHighlight, typedValue, true))
+            return resolveDrawableAttr(context, R.attr.selectableItemBackground);
+        int highlightColor = typedValue.resourceId != 0
+                ? ContextCompat.getColor(context, typedValue.resourceId) : typedValue.data;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP)
+            return createRipple(highlightColor, createRoundedRect(Color.WHITE));
+        StateListDrawable pressed = new StateListDrawable();
+        pressed.addState(new int[]{android.R.attr.state_pressed}, createRoundedRect(highlightColor));
+        pressed.addState(new int[]{android.R.attr.state_focused}, createRoundedRect(highlightColor));
+        return pressed;
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    protected static Drawable createRipple(int color, Drawable mask) {
+        return new RippleDrawable(ColorStateList.valueOf(color), null, mask);
+    }
+
+    protected GradientDrawable createRoundedRect(int color) {
+
+        GradientDrawable drawable = new GradientDrawable();
+        drawable.setCornerRadius(this.cornerRadius);
+        drawable.setColor(color);
+        return drawable;
+    }
+
+    /**
+     * create an icon button for the flat mode, styled like the ones in the layout xml
+     */
+    protected AppCompatImageButton createIconButton(int id) {
+
+        Context context = this.host.getContext();
+        AppCompatImageButton button = new AppCompatImageButton(context);
+        button.setId(id);
+        TypedValue typedValue = new TypedValue();
+        if (context.getTheme().resolveAttribute(R.attr.selectableItemBackgroundBorderless, typedValue, true))
+            button.setBackgroundResource(typedValue.resourceId);
+        button.setVisibility(View.GONE);
+        this.host.addView(button);
+        return button;
+    }
+
+    /* Decorations */
+
+    protected void setLabelText(String labelText) {
+
+        this.labelText = labelText == null ? "" : labelText;
+        this.host.requestLayout();
+        this.host.invalidate();
+    }
+
+    protected void setLabelColor(int color) {
+
+        if (this.labelPaint.getColor() == color) return;
+        this.labelPaint.setColor(color);
+        this.host.invalidate();
+    }
+
+    protected int getLabelColor() {
+        return this.labelPaint.getColor();
+    }
+
+    protected void setHelperText(String helperText) {
+
+        if (helperText == null) helperText = "";
+        if (helperText.equals(this.helperText)) return;
+        this.helperText = helperText;
+        this.helperLayout = null;
+        this.host.requestLayout();
+        this.host.invalidate();
+    }
+
+    protected void setHelperColor(int color) {
+
+        if (this.helperPaint.getColor() == color) return;
+        this.helperPaint.setColor(color);
+        this.host.invalidate();
+    }
+
+    /**
+     * keeps the array like TextView.setText(char[], int, int) does
+     */
+    protected void setCounterText(char[] counterChars, int length) {
+
+        boolean relayout = length != this.counterLength;
+        this.counterChars = counterChars;
+        this.counterLength = length;
+        if (relayout) this.host.requestLayout();
+        this.host.invalidate();
+    }
+
+    protected String getCounterText() {
+        return new String(this.counterChars, 0, this.counterLength);
+    }
+
+    protected void setCounterColor(int color) {
+
+        if (this.counterPaint.getColor() == color) return;
+        this.counterPaint.setColor(color);
+        this.host.invalidate();
+    }
+
+    protected void setBottomLineColor(int color) {
+
+        if (this.bottomLinePaint.getColor() == color) return;
+        this.bottomLinePaint.setColor(color);
+        this.host.invalidate();
+    }
+
+    /**
+     * show or hide the bottom line, the helper label and the counter label,
+     * equivalent to toggling them between View.VISIBLE and View.INVISIBLE
+     */
+    protected void setBottomVisible(boolean visible) {
+
+        if (this.bottomVisible == visible) return;
+        this.bottomVisible = visible;
+        this.host.invalidate();
+    }
+
+    protected void setPanelEnabled(boolean enabled) {
+
+        this.panelEnabled = enabled;
+        this.host.refreshDrawableState();
+    }
+
+    protected Drawable getPanelBackground() {
+        return this.panelBackground;
+    }
+
+    /* Label Animation */
+
+    /**
+     * driven by the LabelAnimator of the host
+     */
+    protected void setLabelProgress(float progress) {
+
+        if (this.labelProgress == progress) return;
+        this.labelProgress = progress;
+        this.host.invalidate();
+    }
+
+    /* Measure & Layout */
+
+    protected static boolean isShown(View view) {
+        return view != null && view.getVisibility() != View.GONE;
+    }
+
+    protected void measure(int widthMeasureSpec, int heightMeasureSpec) {
+
+        int widthMode = View.MeasureSpec.getMode(widthMeasureSpec);
+        int widthSize = View.MeasureSpec.getSize(widthMeasureSpec);
+        int heightMode = View.MeasureSpec.getMode(heightMeasureSpec);
+        int heightSize = View.MeasureSpec.getSize(heightMeasureSpec);
+        int exactButton = View.MeasureSpec.makeMeasureSpec(this.iconSize, View.MeasureSpec.EXACTLY);
+
+        /* icon signifier column */
+        this.iconSpace = 0;
+        if (isShown(this.host.iconImageButton)) {
+            this.host.iconImageButton.measure(exactButton, exactButton);
+            this.iconSpace = this.iconSize + this.iconMarginEnd;
+        }
+
+        /* the buttons after the EditText only show along with it */
+        ExtendedEditText editText = this.host.editText;
+        boolean editTextShown = isShown(editText);
+        int buttonsWidth = 0;
+        if (editTextShown && isShown(this.host.clearButton)) {
+            this.host.clearButton.measure(exactButton, exactButton);
+            buttonsWidth += this.iconSize + this.buttonMarginStart;
+        }
+        if (editTextShown && isShown(this.host.endIconImageButton)) {
+            this.host.endIconImageButton.measure(exactButton, exactButton);
+            buttonsWidth += this.iconSize + this.buttonMarginStart;
+        }
+
+        int labelHeight = this.labelMetrics.bottom - this.labelMetrics.top;
+        int bottomRowHeight = this.bottomMarginTop + this.bottomMetrics.bottom - this.bottomMetrics.top;
+
+        /* EditText */
+        int editWidthSpec;
+        if (widthMode == View.MeasureSpec.UNSPECIFIED)
+            editWidthSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        else editWidthSpec = View.MeasureSpec.makeMeasureSpec(
+                Math.max(0, widthSize - this.iconSpace - 2 * this.panelPadding - buttonsWidth),
+                widthMode == View.MeasureSpec.EXACTLY ? View.MeasureSpec.EXACTLY : View.MeasureSpec.AT_MOST);
+        int editHeightSpec;
+        if (heightMode == View.MeasureSpec.UNSPECIFIED)
+            editHeightSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        else editHeightSpec = View.MeasureSpec.makeMeasureSpec(Math.max(0, heightSize - bottomRowHeight
+                        - this.editTextMarginTop - this.editTextMarginBottom - this.bottomLineHeight),
+                View.MeasureSpec.AT_MOST);
+        if (editTextShown) editText.measure(editWidthSpec, editHeightSpec);
+
+        /* Panel */
+        if (widthMode == View.MeasureSpec.EXACTLY) this.panelWidth = widthSize - this.iconSpace;
+        else {
+            int contentWidth = (int) Math.ceil(this.labelPaint.measureText(this.labelText));
+            if (editTextShown)
+                contentWidth = Math.max(contentWidth, editText.getMeasuredWidth() + buttonsWidth);
+            this.panelWidth = contentWidth + 2 * this.panelPadding;
+            if (widthMode == View.MeasureSpec.AT_MOST)
+                this.panelWidth = Math.min(this.panelWidth, widthSize - this.iconSpace);
+        }
+        this.measuredWidth = this.iconSpace + this.panelWidth;
+
+        /* Helper & Counter */
+        int helperWidth = Math.max(0, this.panelWidth - 2 * this.panelPadding - this.helperMarginEnd
+                - (int) Math.ceil(this.counterPaint.measureText(this.counterChars, 0, this.counterLength)));
+        if (this.helperLayout == null || this.helperLayoutWidth != helperWidth) {
+            this.helperLayout = new StaticLayout(this.helperText, this.helperPaint, helperWidth,
+                    Layout.Alignment.ALIGN_NORMAL, 1f, 0f, true);
+            this.helperLayoutWidth = helperWidth;
+        }
+        bottomRowHeight = Math.max(bottomRowHeight, this.bottomMarginTop + this.helperLayout.getHeight());
+
+        if (heightMode == View.MeasureSpec.EXACTLY) {
+            this.measuredHeight = heightSize;
+            this.panelHeight = Math.max(0, heightSize - bottomRowHeight);
+        } else {
+            int contentHeight = this.labelMargin * 2 + labelHeight;
+            if (editTextShown)
+                contentHeight = Math.max(contentHeight,
+                        this.editTextMarginTop + editText.getMeasuredHeight() + this.editTextMarginBottom);
+            this.panelHeight = contentHeight + this.bottomLineHeight;
+            this.measuredHeight = this.panelHeight + bottomRowHeight;
+            if (heightMode == View.MeasureSpec.AT_MOST && this.measuredHeight > heightSize) {
+                this.measuredHeight = heightSize;
+                this.panelHeight = Math.max(0, heightSize - bottomRowHeight);
+            }
+        }
+    }
+
+    protected int getMeasuredWidth() {
+        return this.measuredWidth;
+    }
+
+    protected int getMeasuredHeight() {
+        return this.measuredHeight;
+    }
+
+    /**
+     * lay a child out at the given left to right position, mirrored when the layout is RTL
+     */
+    protected void layoutChild(View child, int left, int top, int right, int bottom) {
+
+        if (this.rtl) {
+            int width = this.host.getWidth();
+            child.layout(width - right, top, width - left, bottom);
+        } else child.layout(left, top, right, bottom);
+    }
+
+    protected void layout() {
+
+        this.rtl = ViewCompat.getLayoutDirection(this.host) == ViewCompat.LAYOUT_DIRECTION_RTL;
+        this.labelPaint.setTextAlign(this.rtl ? Paint.Align.RIGHT : Paint.Align.LEFT);
+
+        if (isShown(this.host.iconImageButton))
+            layoutChild(this.host.iconImageButton, 0, this.iconMarginTop,
+                    this.iconSize, this.iconMarginTop + this.iconSize);
+
+        if (this.rtl) {
+            int width = this.host.getWidth();
+            this.panelRect.set(width - this.iconSpace - this.panelWidth, 0, width - this.iconSpace, this.panelHeight);
+        } else this.panelRect.set(this.iconSpace, 0, this.iconSpace + this.panelWidth, this.panelHeight);
+        this.panelRectF.set(this.panelRect);
+        this.panelBackground.setBounds(this.panelRect);
+        if (this.panelForeground != null) this.panelForeground.setBounds(this.panelRect);
+        this.bottomLineRect.set(this.panelRect.left, this.panelRect.bottom - this.bottomLineHeight,
+                this.panelRect.right, this.panelRect.bottom);
+        this.bottomRowTop = this.panelRect.bottom + this.bottomMarginTop;
+
+        ExtendedEditText editText = this.host.editText;
+        if (!isShown(editText)) return;
+        int left = this.iconSpace + this.panelPadding;
+        int bottom = this.editTextMarginTop + editText.getMeasuredHeight();
+        layoutChild(editText, left, this.editTextMarginTop, left + editText.getMeasuredWidth(), bottom);
+        left += editText.getMeasuredWidth();
+        if (isShown(this.host.clearButton)) {
+            left += this.buttonMarginStart;
+            layoutChild(this.host.clearButton, left, bottom - this.iconSize, left + this.iconSize, bottom);
+            left += this.iconSize;
+        }
+        if (isShown(this.host.endIconImageButton)) {
+            left += this.buttonMarginStart;
+            layoutChild(this.host.endIconImageButton, left, bottom - this.iconSize, left + this.iconSize, bottom);
+        }
+    }
+
+    /* Drawing & Touch */
+
+    /**
+     * draw everything that sits behind the children
+     */
+    protected void drawBackground(Canvas canvas) {
+
+        this.panelBackground.draw(canvas);
+
+        if (this.bottomVisible) {
+            /* the bottom strip of the rounded panel shape, a rect clip is cheap unlike a path clip */
+            int saveCount = canvas.save();
+            canvas.clipRect(this.bottomLineRect);
+            canvas.drawRoundRect(this.panelRectF, this.cornerRadius, this.cornerRadius, this.bottomLinePaint);
+            canvas.restoreToCount(saveCount);
+        }
+
+        /* floating label, scaled by 0.75 from its top-start corner when raised */
+        int saveCount = canvas.save();
+        float scale = 1f - 0.25f * this.labelProgress;
+        canvas.translate(this.rtl ? this.panelRect.right - this.panelPadding : this.panelRect.left + this.panelPadding,
+                this.panelRect.top + this.labelMargin + this.labelTranslation * this.labelProgress);
+        canvas.scale(scale, scale);
+        canvas.drawText(this.labelText, 0, -this.labelMetrics.top, this.labelPaint);
+        canvas.restoreToCount(saveCount);
+
+        if (this.bottomVisible) {
+            saveCount = canvas.save();
+            canvas.translate(this.rtl ? this.panelRect.right - this.panelPadding - this.helperLayoutWidth
+                    : this.panelRect.left + this.panelPadding, this.bottomRowTop);
+            if (this.helperLayout != null) this.helperLayout.draw(canvas);
+            canvas.restoreToCount(saveCount);
+            float counterX = this.rtl ? this.panelRect.left + this.panelPadding : this.panelRect.right - this.panelPadding
+                    - this.counterPaint.measureText(this.counterChars, 0, this.counterLength);
+            canvas.drawText(this.counterChars, 0, this.counterLength, counterX,
+                    this.bottomRowTop - this.bottomMetrics.top, this.counterPaint);
+        }
+    }
+
+    /**
+     * draw everything that sits in front of the children
+     */
+    protected void drawForeground(Canvas canvas) {
+        if (this.panelForeground != null) this.panelForeground.draw(canvas);
+    }
+
+    protected boolean isPanelTouchable(float x, float y) {
+        return this.panelEnabled && this.panelRect.contains((int) x, (int) y);
+    }
+
+    protected void setDrawableState(int[] state) {
+        if (this.panelForeground != null && this.panelForeground.isStateful())
+            this.panelForeground.setState(state);
+    }
+
+    protected void setHotspot(float x, float y) {
+        if (this.panelForeground != null) DrawableCompat.setHotspot(this.panelForeground, x, y);
+    }
+
+    protected boolean verifyDrawable(Drawable who) {
+        return who == this.panelForeground || who == this.panelBackground;
+    }
+
+    protected void jumpToCurrentState() {
+        if (this.panelForeground != null) this.panelForeground.jumpToCurrentState();
+    }
+}
@@ -0,0 +1,151 @@
+package studio.carbonylgroup.textfieldboxes;
+
+/**
+ * Text Field Boxes
+ * A formatting pattern for TextFieldBoxes.setInputMask(). In the pattern
+ * '#' is a digit, 'A' a letter, '*' a letter or a digit and '?' any character,
+ * a '\' makes the next character literal and every other character is a literal separator.
+ * Separators are inserted as the user types. A typed or pasted one is dropped like any character
+ * the next slot doesn't accept, but kept as input where the slot accepts it: the 7 of a pasted
+ * "+7 (" is read as the first digit of "+7 (###) ###-####".
+ * Immutable, one InputMask can be shared by many fields.
+ */
+public class InputMask {
+
+    public static final InputMask CARD_NUMBER = new InputMask("#### #### #### ####");
+    public static final InputMask PHONE_US = new InputMask("(###) ###-####");
+    public static final InputMask DATE = new InputMask("##/##/####");
+    public static final InputMask IBAN = new InputMask("AA## **** **** **** **** **** **** **");
+
+    protected static final char SLOT_DIGIT = '#';
+    protected static final char SLOT_LETTER = 'A';
+    protected static final char SLOT_ALPHANUMERIC = '*';
+    protected static final char SLOT_ANY = '?';
+    protected static final char NOT_A_SLOT = 0;
+
+    protected final String pattern;
+
+    /**
+     * for each position of the formatted text: the slot type, NOT_A_SLOT for a literal
+     */
+    protected final char[] slots;
+
+    /**
+     * for each position of the formatted text: the literal, 0 for a slot
+     */
+    protected final char[] literals;
+
+    /**
+     * slotsBefore[i] is the number of slots before position i, i.e. the unmasked length of i formatted characters
+     */
+    protected final int[] slotsBefore;
+
+    public InputMask(String pattern) {
+
+        this.pattern = pattern;
+        StringBuilder slots = new StringBuilder();
+        StringBuilder literals = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\\' && i + 1 < pattern.length()) {
+                slots.append(NOT_A_SLOT);
+                literals.append(pattern.charAt(++i));
+            } else if (c == SLOT_DIGIT || c == SLOT_LETTER || c == SLOT_ALPHANUMERIC || c == SLOT_ANY) {
+                slots.append(c);
+                literals.append((char) 0);
+            } else {
+                slots.append(NOT_A_SLOT);
+                literals.append(c);
+            }
+        }
+        this.slots = slots.toString().toCharArray();
+        this.literals = literals.toString().toCharArray();
+        this.slotsBefore = new int[this.slots.length + 1];
+        for (int i = 0; i < this.slots.length; i++)
+            this.slotsBefore[i + 1] = this.slotsBefore[i] + (this.slots[i] != NOT_A_SLOT ? 1 : 0);
+    }
+
+    public String getPattern() {
+        return this.pattern;
+    }
+
+    /**
+     * @return the length of the formatted text once every slot is filled
+     */
+    public int length() {
+        return this.slots.length;
+    }
+
+    /**
+     * @return the most characters the unmasked text can hold
+     */
+    public int getSlotCount() {
+        return this.slotsBefore[this.slots.length];
+    }
+
+    /**
+     * @return the unmasked length of the first position formatted characters
+     */
+    protected int unmaskedLength(int position) {
+        return this.slotsBefore[Math.max(0, Math.min(position, this.slots.length))];
+    }
+
+    protected boolean accepts(int position, char c) {
+
+        switch (this.slots[position]) {
+            case SLOT_DIGIT:
+                return Character.isDigit(c);
+            case SLOT_LETTER:
+                return Character.isLetter(c);
+            case SLOT_ALPHANUMERIC:
+                return Character.isLetterOrDigit(c);
+            case SLOT_ANY:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param text any text, formatted or not
+     * @return the text formatted with this mask, the characters that fit no slot are dropped
+     */
+    public String format(CharSequence text) {
+
+        StringBuilder formatted = new StringBuilder(this.slots.length);
+        fill(text, 0, formatted, null);
+        return formatted.toString();
+    }
+
+    /**
+     * place the characters of the text in the slots, in order: the separators before a slot are only added
+     * along with the character filling it, and a character the next slot doesn't accept is dropped.
+     * a character equal to a separator is never skipped as one if the slot accepts it,
+     * so the unmasked text always fills the mask again the same way
+     *
+     * @param text      the characters to place
+     * @param cursorEnd the characters before it count for the returned cursor position
+     * @param formatted receives the formatted text
+     * @param unmasked  receives the placed characters, may be null
+     * @return the formatted position right after the last character placed from before cursorEnd
+     */
+    protected int fill(CharSequence text, int cursorEnd, StringBuilder formatted, StringBuilder unmasked) {
+
+        int position = 0;
+        int cursor = 0;
+        for (int i = 0; i < text.length() && position < this.slots.length; i++) {
+            char c = text.charAt(i);
+
+            int slot = position;
+            while (slot < this.slots.length && this.slots[slot] == NOT_A_SLOT) slot++;
+            if (slot == this.slots.length || !accepts(slot, c)) continue;
+
+            for (int j = position; j < slot; j++) formatted.append(this.literals[j]);
+            formatted.append(c);
+            if (unmasked != null) unmasked.append(c);
+            position = slot + 1;
+            if (i < cursorEnd) cursor = formatted.length();
+        }
+        return cursor;
+    }
+}
@@ -0,0 +1,173 @@
+package studio.carbonylgroup.textfieldboxes;
+
+import android.text.Editable;
+import android.text.Selection;
+import android.text.TextUtils;
+
+/**
+ * Text Field Boxes
+ * Applies an InputMask to the EditText of one TextFieldBoxes, driven by its TextWatcher.
+ * The unmasked text is kept alongside: each change is mapped onto it through the mask,
+ * the result is formatted again and only the part that differs from what the user typed
+ * is replaced in the Editable, with the cursor placed right after the typed characters.
+ * While the hard limit of the host is on, the typed characters that would take the formatted text
+ * over its max characters are dropped here, counted the same way as the counter, in place of
+ * MaxCharactersFilter which can't tell the separators still to be added.
+ * The other InputFilters of the EditText apply to the formatted text as it is written.
+ */
+class InputMaskEngine {
+
+    protected final InputMask mask;
+    protected final TextFieldBoxes host;
+    protected StringBuilder unmasked = new StringBuilder();
+
+    private StringBuilder placed = new StringBuilder();
+    private final StringBuilder candidate = new StringBuilder();
+    private final StringBuilder formatted = new StringBuilder();
+    private final StringBuilder inserted = new StringBuilder();
+
+    /**
+     * the range of the unmasked text the pending change replaces
+     */
+    private int editStart;
+    private int editEnd;
+    private boolean pending = false;
+    private boolean selfChange = false;
+    private boolean rewritten = false;
+
+    InputMaskEngine(InputMask mask, TextFieldBoxes host) {
+
+        this.mask = mask;
+        this.host = host;
+    }
+
+    /**
+     * format the text already in the Editable, as if it had all just been typed
+     */
+    protected void attach(Editable editable) {
+
+        this.unmasked.setLength(0);
+        this.editStart = 0;
+        this.editEnd = 0;
+        this.inserted.setLength(0);
+        this.inserted.append(editable);
+        this.pending = true;
+        afterTextChanged(editable);
+    }
+
+    protected String getUnmaskedText() {
+        return this.unmasked.toString();
+    }
+
+    protected void beforeTextChanged(CharSequence text, int start, int count, int after) {
+
+        if (this.selfChange) return;
+        /* the formatted text lines up with the mask, so positions map through it directly */
+        this.editStart = Math.min(this.mask.unmaskedLength(start), this.unmasked.length());
+        this.editEnd = Math.min(this.mask.unmaskedLength(start + count), this.unmasked.length());
+        /* deleting only separators deletes the character before them */
+        if (count > 0 && after == 0 && this.editStart == this.editEnd && this.editStart > 0) this.editStart--;
+        this.pending = true;
+    }
+
+    protected void onTextChanged(CharSequence text, int start, int before, int count) {
+
+        if (this.selfChange) return;
+        this.inserted.setLength(0);
+        this.inserted.append(text, start, start + count);
+    }
+
+    /**
+     * @return true if the Editable was rewritten, the watchers already ran again for the final text
+     */
+    protected boolean afterTextChanged(Editable editable) {
+
+        if (this.selfChange) {
+            this.rewritten = true;
+            return false;
+        }
+        if (!this.pending) return false;
+        this.pending = false;
+
+        int cursor = place();
+
+        /* drop the typed characters from the end until the formatted text fits the hard limit */
+        while (this.inserted.length() > 0 && isOverHardLimit()) {
+            int length = this.inserted.length() - 1;
+            if (length > 0 && Character.isHighSurrogate(this.inserted.charAt(length - 1))) length--;
+            this.inserted.setLength(length);
+            cursor = place();
+        }
+
+        /* what got placed is the new unmasked text */
+        StringBuilder previous = this.unmasked;
+        this.unmasked = this.placed;
+        this.placed = previous;
+
+        boolean changed = replaceDifference(editable);
+        Selection.setSelection(editable, Math.min(cursor, editable.length()));
+        return changed;
+    }
+
+    /**
+     * apply the pending change to the unmasked text and fill the mask with it
+     *
+     * @return the cursor position right after the typed characters in the formatted text
+     */
+    private int place() {
+
+        this.candidate.setLength(0);
+        this.candidate.append(this.unmasked, 0, this.editStart)
+                .append(this.inserted)
+                .append(this.unmasked, this.editEnd, this.unmasked.length());
+        this.formatted.setLength(0);
+        this.placed.setLength(0);
+        return this.mask.fill(this.candidate, this.editStart + this.inserted.length(), this.formatted, this.placed);
+    }
+
+    /**
+     * @return whether the formatted text goes over the max characters while the hard limit is on
+     */
+    private boolean isOverHardLimit() {
+
+        if (this.host == null || !this.host.maxCharactersHardLimit || this.host.maxCharacters <= 0) return false;
+        return this.host.characterCountPolicy.count(this.formatted, 0, this.formatted.length())
+                > this.host.maxCharacters;
+    }
+
+    /**
+     * replace the part of the Editable that differs from the formatted text.
+     * the hard limit was already applied by afterTextChanged(), the other InputFilters still apply
+     *
+     * @return whether the Editable changed, the watchers then ran again for it
+     */
+    private boolean replaceDifference(Editable editable) {
+
+        int oldLength = editable.length();
+        int newLength = this.formatted.length();
+        int prefix = 0;
+        while (prefix < oldLength && prefix < newLength && editable.charAt(prefix) == this.formatted.charAt(prefix))
+            prefix++;
+        if (prefix == oldLength && prefix == newLength) return false;
+        int suffix = 0;
+        while (suffix < oldLength - prefix && suffix < newLength - prefix
+                && editable.charAt(oldLength - 1 - suffix) == this.formatted.charAt(newLength - 1 - suffix))
+            suffix++;
+
+        this.selfChange = true;
+        this.rewritten = false;
+        try {
+            editable.replace(prefix, oldLength - suffix, this.formatted, prefix, newLength - suffix);
+        } finally {
+            this.selfChange = false;
+        }
+
+        /* a filter changed what was written: the unmasked text follows what the Editable holds */
+        if (!TextUtils.equals(editable, this.formatted)) {
+            this.formatted.setLength(0);
+            this.unmasked.setLength(0);
+            this.mask.fill(editable, 0, this.formatted, this.unmasked);
+        }
+        return this.rewritten;
+    }
+}
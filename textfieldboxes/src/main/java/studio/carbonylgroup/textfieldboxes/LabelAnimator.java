@@ -0,0 +1,105 @@
+package studio.carbonylgroup.textfieldboxes;
+
+import android.animation.ValueAnimator;
+import android.view.View;
+
+/**
+ * Text Field Boxes
+ * Drives the floating label and the EditText of one TextFieldBoxes from a single progress value,
+ * 0 being the lowered label over a transparent EditText and 1 the raised label over an opaque one.
+ * <p>
+ * One ValueAnimator is reused for every transition, a new target reverses it from wherever
+ * it currently is instead of restarting from the far end.
+ */
+class LabelAnimator implements ValueAnimator.AnimatorUpdateListener {
+
+    protected static final float RAISED_SCALE = 0.75f;
+
+    protected final ValueAnimator animator;
+    protected final View editText;
+    protected final View floatingLabel;
+    protected final FlatRenderer flatRenderer;
+
+    /**
+     * the translationY of the floating label when fully raised
+     */
+    protected final float raisedTranslation;
+
+    protected float progress = 0f;
+    protected float target = 0f;
+
+    LabelAnimator(View editText, View floatingLabel, FlatRenderer flatRenderer, float raisedTranslation) {
+
+        this.editText = editText;
+        this.floatingLabel = floatingLabel;
+        this.flatRenderer = flatRenderer;
+        this.raisedTranslation = raisedTranslation;
+        this.animator = ValueAnimator.ofFloat(0f, 1f);
+        this.animator.addUpdateListener(this);
+    }
+
+    /**
+     * animate towards the target, the duration is scaled by the distance left to cover
+     *
+     * @param target   0 to lower the label, 1 to raise it
+     * @param duration duration of a full transition in milliseconds
+     */
+    protected void animateTo(float target, long duration) {
+
+        if (this.animator.isRunning()) {
+            if (this.target == target) return;
+            this.animator.cancel();
+        }
+        this.target = target;
+        long remaining = (long) (duration * Math.abs(target - this.progress));
+        if (remaining <= 0) {
+            setProgress(target);
+            return;
+        }
+        this.animator.setFloatValues(this.progress, target);
+        this.animator.setDuration(remaining);
+        this.animator.start();
+    }
+
+    /**
+     * stop any running transition and apply the target right away
+     */
+    protected void jumpTo(float target) {
+
+        this.animator.cancel();
+        this.target = target;
+        setProgress(target);
+    }
+
+    /**
+     * finish the running transition, if any
+     */
+    protected void finish() {
+        if (this.animator.isRunning()) jumpTo(this.target);
+    }
+
+    protected float getTarget() {
+        return this.target;
+    }
+
+    @Override
+    public void onAnimationUpdate(ValueAnimator animation) {
+
+        long metricsStart = TextFieldBoxesMetrics.begin(TextFieldBoxesMetrics.LABEL_FRAME);
+        setProgress((Float) animation.getAnimatedValue());
+        TextFieldBoxesMetrics.end(this.editText, TextFieldBoxesMetrics.LABEL_FRAME, metricsStart);
+    }
+
+    protected void setProgress(float progress) {
+
+        this.progress = progress;
+        this.editText.setAlpha(progress);
+        if (this.flatRenderer != null) this.flatRenderer.setLabelProgress(progress);
+        else {
+            float scale = 1f - (1f - RAISED_SCALE) * progress;
+            this.floatingLabel.setScaleX(scale);
+            this.floatingLabel.setScaleY(scale);
+            this.floatingLabel.setTranslationY(this.raisedTranslation * progress);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package studio.carbonylgroup.textfieldboxes;
+
+import android.text.InputFilter;
+import android.text.Spanned;
+import android.view.inputmethod.BaseInputConnection;
+
+/**
+ * Text Field Boxes
+ * Truncates inserts and pastes so that the text never goes over the max characters of a
+ * TextFieldBoxes, counted with its CharacterCountPolicy the same way the counter does.
+ * Text still being composed by the IME is let through, it is truncated once committed,
+ * so that the composition of e.g. CJK input is not broken up near the limit.
+ * Installed on the EditText by TextFieldBoxes.setMaxCharactersHardLimit().
+ */
+class MaxCharactersFilter implements InputFilter {
+
+    protected final TextFieldBoxes host;
+
+    /**
+     * the widened range around the replacement, rebuilt for each candidate length
+     */
+    private final StringBuilder slice = new StringBuilder();
+
+    MaxCharactersFilter(TextFieldBoxes host) {
+        this.host = host;
+    }
+
+    @Override
+    public CharSequence filter(CharSequence source, int start, int end, Spanned dest, int dstart, int dend) {
+
+        int max = this.host.maxCharacters;
+        if (max <= 0 || start == end || isComposing(source)) return null;
+        /* with an InputMask, the separators are only added afterwards: the mask applies the limit */
+        if (this.host.inputMaskEngine != null) return null;
+
+        CharacterCountPolicy policy = this.host.characterCountPolicy;
+        int rangeStart = policy.getRangeStart(dest, dstart);
+        int rangeEnd = policy.getRangeEnd(dest, dend);
+        int current = this.host.obtainCharacterCount();
+
+        /* what the widened range may count at most once replaced */
+        int budget = max - current + policy.count(dest, rangeStart, rangeEnd);
+        if (countReplaced(policy, source, start, end, dest, rangeStart, dstart, dend, rangeEnd) <= budget)
+            return null;
+
+        /* the longest prefix of the source that fits */
+        int low = 0;
+        int high = end - start - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (countReplaced(policy, source, start, start + mid, dest, rangeStart, dstart, dend, rangeEnd) <= budget)
+                low = mid;
+            else high = mid - 1;
+        }
+        /* don't cut a surrogate pair in half */
+        if (low > 0 && Character.isHighSurrogate(source.charAt(start + low - 1))) low--;
+        return source.subSequence(start, start + low);
+    }
+
+    /**
+     * @return whether the source is composing text, which the IME marks with the composing span
+     */
+    protected static boolean isComposing(CharSequence source) {
+        return source instanceof Spanned && BaseInputConnection.getComposingSpanStart((Spanned) source) != -1;
+    }
+
+    private int countReplaced(CharacterCountPolicy policy, CharSequence source, int start, int end,
+                              Spanned dest, int rangeStart, int dstart, int dend, int rangeEnd) {
+
+        this.slice.setLength(0);
+        this.slice.append(dest, rangeStart, dstart).append(source, start, end).append(dest, dend, rangeEnd);
+        return policy.count(this.slice, 0, this.slice.length());
+    }
+}
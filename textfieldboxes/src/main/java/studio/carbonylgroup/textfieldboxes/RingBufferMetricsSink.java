@@ -0,0 +1,126 @@
+package studio.carbonylgroup.textfieldboxes;
+
+import android.content.res.Resources;
+import android.view.View;
+import android.view.ViewParent;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Text Field Boxes
+ * A TextFieldBoxesMetrics.Sink keeping the last events in a fixed size ring buffer,
+ * without allocating per event. dump() sums them up per field: the events of the EditText
+ * and the panel of a field are counted for the TextFieldBoxes they belong to.
+ */
+public class RingBufferMetricsSink implements TextFieldBoxesMetrics.Sink {
+
+    protected final int capacity;
+    protected final int[] fieldKeys;
+    protected final int[] fieldIds;
+    protected final byte[] events;
+    protected final long[] durations;
+    protected int next = 0;
+    protected int size = 0;
+    protected Resources resources;
+
+    public RingBufferMetricsSink(int capacity) {
+
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+        this.fieldKeys = new int[capacity];
+        this.fieldIds = new int[capacity];
+        this.events = new byte[capacity];
+        this.durations = new long[capacity];
+    }
+
+    @Override
+    public synchronized void onEvent(View view, int event, long durationNanos) {
+
+        View field = fieldOf(view);
+        if (this.resources == null) this.resources = field.getResources();
+        this.fieldKeys[this.next] = System.identityHashCode(field);
+        this.fieldIds[this.next] = field.getId();
+        this.events[this.next] = (byte) event;
+        this.durations[this.next] = durationNanos;
+        this.next = (this.next + 1) % this.capacity;
+        if (this.size < this.capacity) this.size++;
+    }
+
+    /**
+     * @return the TextFieldBoxes the view belongs to, the view itself if it's outside of one
+     */
+    protected static View fieldOf(View view) {
+
+        View current = view;
+        while (current != null && !(current instanceof TextFieldBoxes)) {
+            ViewParent parent = current.getParent();
+            current = parent instanceof View ? (View) parent : null;
+        }
+        return current != null ? current : view;
+    }
+
+    public synchronized void clear() {
+
+        this.next = 0;
+        this.size = 0;
+    }
+
+    /**
+     * @return the number of events held, at most the capacity
+     */
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * @return per field, for each event seen: the count, the total and the max duration in milliseconds
+     */
+    public synchronized String dump() {
+
+        Map<Integer, long[]> stats = new LinkedHashMap<>();
+        Map<Integer, Integer> ids = new LinkedHashMap<>();
+        int first = (this.next - this.size + this.capacity) % this.capacity;
+        for (int n = 0; n < this.size; n++) {
+            int i = (first + n) % this.capacity;
+            long[] fieldStats = stats.get(this.fieldKeys[i]);
+            if (fieldStats == null) {
+                /* count, total and max for each event */
+                fieldStats = new long[TextFieldBoxesMetrics.EVENT_COUNT * 3];
+                stats.put(this.fieldKeys[i], fieldStats);
+                ids.put(this.fieldKeys[i], this.fieldIds[i]);
+            }
+            int offset = this.events[i] * 3;
+            fieldStats[offset]++;
+            fieldStats[offset + 1] += this.durations[i];
+            fieldStats[offset + 2] = Math.max(fieldStats[offset + 2], this.durations[i]);
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<Integer, long[]> entry : stats.entrySet()) {
+            builder.append(fieldName(ids.get(entry.getKey()), entry.getKey())).append('\n');
+            long[] fieldStats = entry.getValue();
+            for (int event = 0; event < TextFieldBoxesMetrics.EVENT_COUNT; event++) {
+                long count = fieldStats[event * 3];
+                if (count == 0) continue;
+                builder.append(String.format(Locale.US, "  %-18s count=%d total=%.3fms max=%.3fms\n",
+                        TextFieldBoxesMetrics.getEventName(event), count,
+                        fieldStats[event * 3 + 1] / 1e6, fieldStats[event * 3 + 2] / 1e6));
+            }
+        }
+        return builder.toString();
+    }
+
+    protected String fieldName(int id, int key) {
+
+        String name = null;
+        if (id != View.NO_ID && this.resources != null) {
+            try {
+                name = this.resources.getResourceEntryName(id);
+            } catch (Resources.NotFoundException ignored) {
+            }
+        }
+        return (name != null ? name : "field") + "@" + Integer.toHexString(key);
+    }
+}
@@ -0,0 +1,111 @@
+package studio.carbonylgroup.textfieldboxes;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * Text Field Boxes
+ * A subscription to the text changes of a TextFieldBoxes, see TextFieldBoxes.subscribeTextChanges().
+ * Changes are conflated: the text is only read when a change is delivered, so a listener
+ * always gets the latest text no matter how many changes were skipped in between.
+ * Everything runs on the main Looper.
+ */
+public class TextChangeSubscription {
+
+    public interface Listener {
+
+        /**
+         * @param text the text at the time of delivery
+         */
+        void onTextChange(String text);
+    }
+
+    protected final TextFieldBoxes host;
+    protected final Listener listener;
+    protected final Handler handler = new Handler(Looper.getMainLooper());
+    protected long debounceMillis = 0;
+    protected long throttleMillis = 0;
+    protected boolean distinctUntilChanged = false;
+    protected boolean subscribed = true;
+
+    protected String lastText;
+    protected long lastDeliveryTime = Long.MIN_VALUE / 2;
+
+    private final Runnable deliverRunnable = new Runnable() {
+        @Override
+        public void run() {
+            deliver();
+        }
+    };
+
+    TextChangeSubscription(TextFieldBoxes host, Listener listener) {
+
+        this.host = host;
+        this.listener = listener;
+    }
+
+    /**
+     * only deliver once the text has stayed unchanged for the given time
+     */
+    public TextChangeSubscription debounce(long debounceMillis) {
+
+        this.debounceMillis = Math.max(0, debounceMillis);
+        return this;
+    }
+
+    /**
+     * deliver at most once per the given time, the latest text at the end of the window
+     */
+    public TextChangeSubscription throttle(long throttleMillis) {
+
+        this.throttleMillis = Math.max(0, throttleMillis);
+        return this;
+    }
+
+    /**
+     * skip the delivery if the text equals the one delivered last time
+     */
+    public TextChangeSubscription distinctUntilChanged() {
+
+        this.distinctUntilChanged = true;
+        return this;
+    }
+
+    public void unsubscribe() {
+
+        cancelPending();
+        if (this.subscribed) this.host.removeTextChangeSubscription(this);
+        this.subscribed = false;
+    }
+
+    public boolean isSubscribed() {
+        return this.subscribed;
+    }
+
+    /**
+     * called by the TextFieldBoxes TextWatcher after each change
+     */
+    protected void onTextChanged() {
+
+        long now = SystemClock.uptimeMillis();
+        long deliveryTime = Math.max(now + this.debounceMillis, this.lastDeliveryTime + this.throttleMillis);
+        this.handler.removeCallbacks(this.deliverRunnable);
+        if (deliveryTime <= now) deliver();
+        else this.handler.postAtTime(this.deliverRunnable, deliveryTime);
+    }
+
+    protected void cancelPending() {
+        this.handler.removeCallbacks(this.deliverRunnable);
+    }
+
+    protected void deliver() {
+
+        if (!this.subscribed) return;
+        String text = this.host.getText();
+        if (this.distinctUntilChanged && text.equals(this.lastText)) return;
+        this.lastText = text;
+        this.lastDeliveryTime = SystemClock.uptimeMillis();
+        this.listener.onTextChange(text);
+    }
+}
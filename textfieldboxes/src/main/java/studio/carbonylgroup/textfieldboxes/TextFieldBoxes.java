@@ -1,26 +1,41 @@
 package studio.carbonylgroup.textfieldboxes;
 
 import android.content.Context;
-import android.content.res.Resources;
 import android.content.res.TypedArray;
+import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.drawable.Drawable;
 import android.graphics.drawable.GradientDrawable;
 import android.graphics.drawable.LayerDrawable;
-import android.support.v4.view.ViewCompat;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.support.annotation.Nullable;
 import android.support.v7.widget.AppCompatImageButton;
 import android.support.v7.widget.AppCompatTextView;
 import android.text.Editable;
+import android.text.InputFilter;
+import android.text.TextPaint;
+import android.text.TextUtils;
 import android.text.TextWatcher;
 import android.util.AttributeSet;
-import android.util.Log;
+import android.util.SparseArray;
+import android.util.TypedValue;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewStub;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.EditText;
 import android.widget.FrameLayout;
 import android.widget.RelativeLayout;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
 
 /**
  * Text Field Boxes
@@ -43,7 +58,8 @@ public class TextFieldBoxes extends FrameLayout {
     protected boolean enabled;
 
     /**
-     * editText text.
+     * editText text from the attributes, set to the EditText when inflated.
+     * the EditText holds the text afterwards, use getText() or getTextAsCharSequence().
      */
     protected String text;
 
@@ -92,6 +108,17 @@ public class TextFieldBoxes extends FrameLayout {
      */
     protected int minCharacters;
 
+    /**
+     * whether inputs going over maxCharacters are truncated instead of only shown as an error. False by default.
+     */
+    protected boolean maxCharactersHardLimit;
+    protected MaxCharactersFilter maxCharactersFilter;
+
+    /**
+     * formats the text while typing, null if there is no InputMask.
+     */
+    protected InputMaskEngine inputMaskEngine;
+
     /**
      * the text color for the helperLabel text. DEFAULT_TEXT_COLOR by default.
      */
@@ -143,6 +170,19 @@ public class TextFieldBoxes extends FrameLayout {
      */
     protected boolean hasFocus;
 
+    /**
+     * whether to draw the panel, bottom line, floating label, helper label and counter label
+     * directly instead of inflating text_field_boxes_layout.xml. False by default.
+     * <p>
+     * <i>NOTE: CAN ONLY BE SET IN XML, AS IT DECIDES WHAT IS INFLATED</i>
+     */
+    protected boolean flatRendering;
+
+    /**
+     * draws the decorations when flatRendering is on, null otherwise.
+     */
+    protected FlatRenderer flatRenderer;
+
     protected View panel;
     protected View bottomLine;
     protected ViewGroup editTextLayout;
@@ -153,6 +193,15 @@ public class TextFieldBoxes extends FrameLayout {
     protected AppCompatImageButton clearButton;
     protected AppCompatImageButton iconImageButton;
     protected AppCompatImageButton endIconImageButton;
+
+    /**
+     * the optional views are inflated from these stubs on first use, null once inflated.
+     */
+    protected ViewStub iconImageButtonStub;
+    protected ViewStub clearButtonStub;
+    protected ViewStub endIconImageButtonStub;
+    protected ViewStub helperLabelStub;
+    protected ViewStub counterLabelStub;
     protected InputMethodManager inputMethodManager;
     protected RelativeLayout rightShell;
     protected RelativeLayout upperPanel;
@@ -160,10 +209,120 @@ public class TextFieldBoxes extends FrameLayout {
     protected int labelColor = -1;
     protected int labelTopMargin = -1;
     protected int ANIMATION_DURATION = 100;
+    protected LabelAnimator labelAnimator;
+    protected boolean instantLabelTransition = false;
     protected boolean onError = false;
+
+    /**
+     * the visual states the highlight color is resolved from, see resolveVisualState().
+     */
+    protected static final int STATE_UNFOCUSED = 0;
+    protected static final int STATE_FOCUSED = 1;
+    protected static final int STATE_ERROR = 2;
+    protected static final int STATE_COUNTER_ERROR = 3;
+    protected static final int STATE_DISABLED = 4;
+
+    /**
+     * whether setError() or the counter limits put the field on error, onError is either of them.
+     */
+    protected boolean helperError = false;
+    protected boolean counterError = false;
+
+    /**
+     * the message passed to setError(), null while there is no helper error.
+     */
+    protected String errorText;
+
+    /**
+     * the TextFieldBoxesForm the field is registered to and its index there, null and -1 if none.
+     */
+    protected TextFieldBoxesForm form;
+    protected int formIndex = -1;
+
+    /**
+     * true while a text is put back by restoreText(), it is then not reported to the form,
+     * the validators and the text change subscriptions as if it had been typed.
+     */
+    protected boolean restoringText = false;
+
+    /**
+     * the state and colors last applied to the views, -1 if never applied.
+     */
+    protected int visualState = -1;
+    protected int appliedHighlightColor;
+    protected int appliedCounterLabelColor;
     protected boolean activated = false;
     protected boolean isResponsiveIconColor = true;
-    protected String TAG = "[][][";
+
+    /**
+     * the number of characters the counter shows, kept up to date by the TextWatcher
+     * while there are limits. without limits nothing is counted and characterCountValid drops,
+     * the text is counted again once limits are set.
+     */
+    protected int characterCount = 0;
+    protected boolean characterCountValid = false;
+
+    /**
+     * how the counter counts, and the range counted in beforeTextChanged() as the offset
+     * it starts at and the number of characters after it, to count the same range again once changed.
+     */
+    protected CharacterCountPolicy characterCountPolicy = CharacterCountPolicy.DEFAULT;
+    protected int countRangeStart;
+    protected int countRangeTail;
+
+    /**
+     * the counter label is written into counterChars without allocating:
+     * the count, then counterSuffix which is only rebuilt when the limits change.
+     */
+    protected static final int MAX_COUNT_DIGITS = 10;
+    protected char[] counterSuffix;
+    protected char[] counterChars;
+    protected int counterLabelCount = -1;
+
+    /**
+     * runs the validators added by addValidator(), null until the first one is added.
+     */
+    protected ValidationPipeline validationPipeline;
+
+    /**
+     * fed by the single TextWatcher added in onFinishInflate, null until the first subscription.
+     */
+    protected List<TextChangeSubscription> textChangeSubscriptions;
+
+    /**
+     * the subscriptions the text changes are delivered to, as listeners may subscribe or unsubscribe
+     * during a delivery. rebuilt on the next delivery after textChangeSubscriptions changed.
+     */
+    protected TextChangeSubscription[] textChangeSubscriptionSnapshot;
+
+    /**
+     * the number of open beginUpdate() calls, and the work deferred until the last one is closed.
+     */
+    protected int batchDepth = 0;
+    protected boolean pendingCounterUpdate = false;
+    protected boolean pendingVisualState = false;
+    protected boolean pendingLayout = false;
+    protected boolean pendingInvalidate = false;
+
+    /**
+     * the measure spec modes and the states the layout rules were last arranged for.
+     */
+    protected int measuredWidthMode = -1;
+    protected int measuredHeightMode = -1;
+    protected boolean measuredEndIconVisible;
+    protected boolean measuredHasClearButton;
+
+    /**
+     * activate and focus the field when the panel or the icon signifier is clicked
+     */
+    protected final OnClickListener focusOnClickListener = new OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            if (!isActivated()) activate();
+            setHasFocus(true);
+            inputMethodManager.showSoftInput(editText, InputMethodManager.SHOW_IMPLICIT);
+        }
+    };
 
     public TextFieldBoxes(Context context) {
 
@@ -193,83 +352,32 @@ public class TextFieldBoxes extends FrameLayout {
 
     protected void initDefaultColor() {
 
-        Resources.Theme theme = getContext().getTheme();
-        TypedArray themeArray;
-
-        /* Get Default Error Color From Theme */
-        DEFAULT_ERROR_COLOR = getContext().getResources().getColor(R.color.A400red);
-
-        /* Get Default Background Color From Theme */
-        themeArray = theme.obtainStyledAttributes(new int[]{android.R.attr.colorForeground});
-        DEFAULT_BG_COLOR = Utils.adjustAlpha(themeArray.getColor(0, 0), 0.06f);
-
-        /* Get Default Primary Color From Theme */
-        themeArray = theme.obtainStyledAttributes(new int[]{R.attr.colorPrimary});
-        if (Utils.isLight(DEFAULT_BG_COLOR))
-            DEFAULT_PRIMARY_COLOR = Utils.lighter(themeArray.getColor(0, 0), 0.2f);
-        else DEFAULT_PRIMARY_COLOR = themeArray.getColor(0, 0);
-
-        /* Get Default Text Color From Theme */
-        themeArray = theme.obtainStyledAttributes(new int[]{android.R.attr.textColorTertiary});
-        DEFAULT_TEXT_COLOR = themeArray.getColor(0, 0);
-
-        /* Get Default Disabled Text Color From Theme */
-        themeArray = theme.obtainStyledAttributes(new int[]{android.R.attr.disabledAlpha});
-        float disabledAlpha = themeArray.getFloat(0, 0);
-        themeArray = theme.obtainStyledAttributes(new int[]{android.R.attr.textColorTertiary});
-        DEFAULT_DISABLED_TEXT_COLOR = Utils.adjustAlpha(themeArray.getColor(0, 0), disabledAlpha);
+        /* resolved once per theme and shared by all the TextFieldBoxes using it */
+        DefaultPalette palette = DefaultPalette.obtain(getContext());
+        DEFAULT_ERROR_COLOR = palette.errorColor;
+        DEFAULT_BG_COLOR = palette.bgColor;
+        DEFAULT_PRIMARY_COLOR = palette.primaryColor;
+        DEFAULT_TEXT_COLOR = palette.textColor;
+        DEFAULT_DISABLED_TEXT_COLOR = palette.disabledTextColor;
+    }
 
-        themeArray.recycle();
+    /**
+     * drop the default colors cached for the theme of the context,
+     * call it after changing the theme in place (e.g. Theme.applyStyle())
+     * so the next TextFieldBoxes resolves them again.
+     * configuration changes are picked up without calling this.
+     */
+    public static void invalidateDefaultColors(Context context) {
+        DefaultPalette.invalidate(context.getTheme());
     }
 
     @Override
     protected void onFinishInflate() {
 
         super.onFinishInflate();
-        addView(LayoutInflater.from(getContext()).inflate(R.layout.text_field_boxes_layout, this, false));
-
-        this.panel = findViewById(R.id.text_field_boxes_panel);
-        this.editText = findViewById(R.id.text_field_boxes_editText);
-        this.editText.setBackgroundColor(Color.TRANSPARENT);
-        this.editText.setAlpha(0f);
-        this.floatingLabel = findViewById(R.id.text_field_boxes_label);
-        this.floatingLabel.setPivotX(0f);
-        this.floatingLabel.setPivotY(0f);
-        this.bottomLine = findViewById(R.id.bg_bottom_line);
-        this.rightShell = findViewById(R.id.text_field_boxes_right_shell);
-        this.upperPanel = findViewById(R.id.text_field_boxes_upper_panel);
-        this.bottomPart = findViewById(R.id.text_field_boxes_bottom);
-        this.labelColor = this.floatingLabel.getCurrentTextColor();
-        this.clearButton = findViewById(R.id.text_field_boxes_clear_button);
-        this.clearButton.setColorFilter(DEFAULT_TEXT_COLOR);
-        this.clearButton.setAlpha(0.35f);
-        this.endIconImageButton = findViewById(R.id.text_field_boxes_end_icon_button);
-        this.endIconImageButton.setColorFilter(DEFAULT_TEXT_COLOR);
-        this.endIconImageButton.setAlpha(0.54f);
-        this.helperLabel = findViewById(R.id.text_field_boxes_helper);
-        this.counterLabel = findViewById(R.id.text_field_boxes_counter);
-        this.iconImageButton = findViewById(R.id.text_field_boxes_imageView);
-        this.editTextLayout = findViewById(R.id.text_field_boxes_editTextLayout);
-        this.labelTopMargin = RelativeLayout.LayoutParams.class
-                .cast(this.floatingLabel.getLayoutParams()).topMargin;
-
-        this.panel.setOnClickListener(new OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                if (!isActivated()) activate();
-                setHasFocus(true);
-                inputMethodManager.showSoftInput(editText, InputMethodManager.SHOW_IMPLICIT);
-            }
-        });
-
-        this.iconImageButton.setOnClickListener(new OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                if (!isActivated()) activate();
-                setHasFocus(true);
-                inputMethodManager.showSoftInput(editText, InputMethodManager.SHOW_IMPLICIT);
-            }
-        });
+        long metricsStart = TextFieldBoxesMetrics.begin(TextFieldBoxesMetrics.INFLATE);
+        if (this.flatRendering) inflateFlat();
+        else inflateLayout();
 
         this.editText.setOnFocusChangeListener(new OnFocusChangeListener() {
             @Override
@@ -282,26 +390,43 @@ public class TextFieldBoxes extends FrameLayout {
         this.editText.addTextChangedListener(new TextWatcher() {
             @Override
             public void beforeTextChanged(CharSequence charSequence, int i, int i1, int i2) {
+                /* the i1 characters from i are about to be replaced */
+                if (inputMaskEngine != null) inputMaskEngine.beforeTextChanged(charSequence, i, i1, i2);
+                if (characterCountValid && hasCharacterLimits()) {
+                    int start = characterCountPolicy.getRangeStart(charSequence, i);
+                    int end = characterCountPolicy.getRangeEnd(charSequence, i + i1);
+                    characterCount -= characterCountPolicy.count(charSequence, start, end);
+                    countRangeStart = start;
+                    countRangeTail = charSequence.length() - end;
+                } else characterCountValid = false;
             }
 
             @Override
             public void onTextChanged(CharSequence charSequence, int i, int i1, int i2) {
+                /* the i2 characters from i are new, count the same widened range again */
+                if (inputMaskEngine != null) inputMaskEngine.onTextChanged(charSequence, i, i1, i2);
+                if (characterCountValid)
+                    characterCount += characterCountPolicy.count(charSequence,
+                            countRangeStart, charSequence.length() - countRangeTail);
             }
 
             @Override
             public void afterTextChanged(Editable editable) {
-                text = editText.getText().toString();
+                /* once the mask rewrote the text, this already ran for the final text */
+                if (inputMaskEngine != null && inputMaskEngine.afterTextChanged(editable)) return;
                 removeError();
                 updateCounterText();
+                if (restoringText) return;
+                if (form != null) form.onFieldTextChanged(formIndex);
+                if (validationPipeline != null) validationPipeline.onTextChanged();
+                if (textChangeSubscriptions != null)
+                    for (TextChangeSubscription subscription : obtainTextChangeSubscriptionSnapshot())
+                        if (subscription.isSubscribed()) subscription.onTextChanged();
             }
         });
 
-        this.clearButton.setOnClickListener(new OnClickListener() {
-            @Override
-            public void onClick(View view) {
-                setText("");
-            }
-        });
+        /* apply all the attributes in one batch */
+        beginUpdate();
 
         /* Texts */
         setText(this.text);
@@ -322,6 +447,7 @@ public class TextFieldBoxes extends FrameLayout {
         /* Characters counter */
         setMaxCharacters(this.maxCharacters);
         setMinCharacters(this.minCharacters);
+        setMaxCharactersHardLimit(this.maxCharactersHardLimit);
 
         /* Others */
         setEnabled(this.enabled);
@@ -332,15 +458,235 @@ public class TextFieldBoxes extends FrameLayout {
         setHasClearButton(this.hasClearButton);
         setHasFocus(this.hasFocus);
         updateCounterText();
+        endUpdate();
+        TextFieldBoxesMetrics.end(this, TextFieldBoxesMetrics.INFLATE, metricsStart);
+    }
+
+    /**
+     * inflate text_field_boxes_layout.xml and look up its views
+     */
+    protected void inflateLayout() {
+
+        /* adopt a subtree pre-inflated by TextFieldBoxesPool if there is one */
+        View layout = TextFieldBoxesPool.acquire(getContext());
+        if (layout == null)
+            layout = LayoutInflater.from(getContext()).inflate(R.layout.text_field_boxes_layout, this, false);
+        addView(layout);
+
+        this.panel = findViewById(R.id.text_field_boxes_panel);
+        this.editText = findViewById(R.id.text_field_boxes_editText);
+        this.editText.setBackgroundColor(Color.TRANSPARENT);
+        this.editText.setAlpha(0f);
+        this.floatingLabel = findViewById(R.id.text_field_boxes_label);
+        this.floatingLabel.setPivotX(0f);
+        this.floatingLabel.setPivotY(0f);
+        this.bottomLine = findViewById(R.id.bg_bottom_line);
+        this.rightShell = findViewById(R.id.text_field_boxes_right_shell);
+        this.upperPanel = findViewById(R.id.text_field_boxes_upper_panel);
+        this.bottomPart = findViewById(R.id.text_field_boxes_bottom);
+        this.labelColor = this.floatingLabel.getCurrentTextColor();
+        this.editTextLayout = findViewById(R.id.text_field_boxes_editTextLayout);
+        this.labelTopMargin = RelativeLayout.LayoutParams.class
+                .cast(this.floatingLabel.getLayoutParams()).topMargin;
+
+        /* the optional views are only inflated once needed */
+        this.iconImageButtonStub = findViewById(R.id.text_field_boxes_imageView);
+        this.clearButtonStub = findViewById(R.id.text_field_boxes_clear_button);
+        this.endIconImageButtonStub = findViewById(R.id.text_field_boxes_end_icon_button);
+        this.helperLabelStub = findViewById(R.id.text_field_boxes_helper);
+        this.counterLabelStub = findViewById(R.id.text_field_boxes_counter);
+
+        /* keep the height of the helper & counter row while it's empty */
+        TextPaint bottomPaint = new TextPaint();
+        bottomPaint.setTextSize(TypedValue.applyDimension(
+                TypedValue.COMPLEX_UNIT_SP, 12, getResources().getDisplayMetrics()));
+        Paint.FontMetricsInt bottomMetrics = bottomPaint.getFontMetricsInt();
+        this.bottomPart.setMinimumHeight(bottomMetrics.bottom - bottomMetrics.top);
+
+        this.labelAnimator = new LabelAnimator(this.editText, this.floatingLabel, null,
+                -this.labelTopMargin + getResources().getDimensionPixelOffset(R.dimen.text_field_boxes_margin_top));
+        this.panel.setOnClickListener(this.focusOnClickListener);
+    }
+
+    /**
+     * create the EditText as the only child and let the FlatRenderer draw the rest,
+     * the icons are only created once they are set
+     */
+    protected void inflateFlat() {
+
+        this.flatRenderer = new FlatRenderer(this);
+        this.editText = new ExtendedEditText(getContext());
+        this.editText.setId(R.id.text_field_boxes_editText);
+        this.editText.setPadding(0, 0, 0, 0);
+        this.editText.setTextSize(TypedValue.COMPLEX_UNIT_SP, 16);
+        this.editText.setBackgroundColor(Color.TRANSPARENT);
+        this.editText.setAlpha(0f);
+        addView(this.editText);
+
+        this.labelColor = this.flatRenderer.getLabelColor();
+        this.labelTopMargin = this.flatRenderer.labelMargin;
+        this.labelAnimator = new LabelAnimator(this.editText, null, this.flatRenderer, 0f);
+        setOnClickListener(this.focusOnClickListener);
+    }
+
+    protected void initIconImageButton() {
+        this.iconImageButton.setOnClickListener(this.focusOnClickListener);
+    }
+
+    protected void initClearButton() {
+
+        this.clearButton.setColorFilter(DEFAULT_TEXT_COLOR);
+        this.clearButton.setAlpha(0.35f);
+        this.clearButton.setOnClickListener(new OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                setText("");
+            }
+        });
+    }
+
+    protected void initEndIconImageButton() {
+
+        this.endIconImageButton.setColorFilter(DEFAULT_TEXT_COLOR);
+        this.endIconImageButton.setAlpha(0.54f);
+    }
+
+    /**
+     * @return the icon signifier button, inflated or created on first use
+     */
+    protected AppCompatImageButton obtainIconImageButton() {
+
+        if (this.iconImageButton == null) {
+            if (this.flatRenderer != null) {
+                this.iconImageButton = this.flatRenderer.createIconButton(R.id.text_field_boxes_imageView);
+                this.iconImageButton.setContentDescription(getContext().getString(R.string.icon));
+            } else {
+                this.iconImageButton = (AppCompatImageButton) this.iconImageButtonStub.inflate();
+                this.iconImageButtonStub = null;
+            }
+            initIconImageButton();
+            if (!this.enabled) {
+                this.iconImageButton.setClickable(false);
+                this.iconImageButton.setEnabled(false);
+            }
+            if (this.visualState != -1) refreshVisualState();
+        }
+        return this.iconImageButton;
+    }
+
+    /**
+     * @return the clear button, inflated or created on first use
+     */
+    protected AppCompatImageButton obtainClearButton() {
+
+        if (this.clearButton == null) {
+            if (this.flatRenderer != null) {
+                this.clearButton = this.flatRenderer.createIconButton(R.id.text_field_boxes_clear_button);
+                this.clearButton.setImageResource(R.drawable.ic_clear_circle_black_24dp);
+                this.clearButton.setPadding(0, Utils.dp2px(getContext(), 2), 0, 0);
+            } else {
+                this.clearButton = (AppCompatImageButton) this.clearButtonStub.inflate();
+                this.clearButtonStub = null;
+            }
+            initClearButton();
+        }
+        return this.clearButton;
+    }
+
+    /**
+     * @return the end icon button, inflated or created on first use
+     */
+    protected AppCompatImageButton obtainEndIconImageButton() {
+
+        if (this.endIconImageButton == null) {
+            if (this.flatRenderer != null) {
+                this.endIconImageButton = this.flatRenderer.createIconButton(R.id.text_field_boxes_end_icon_button);
+                this.endIconImageButton.setPadding(0, Utils.dp2px(getContext(), 2), 0, 0);
+            } else {
+                this.endIconImageButton = (AppCompatImageButton) this.endIconImageButtonStub.inflate();
+                this.endIconImageButtonStub = null;
+            }
+            initEndIconImageButton();
+        }
+        return this.endIconImageButton;
+    }
+
+    /**
+     * @return the helper label, inflated on first use. null when flatRendering is on
+     */
+    protected AppCompatTextView obtainHelperLabel() {
+
+        if (this.helperLabel == null && this.helperLabelStub != null) {
+            this.helperLabel = (AppCompatTextView) this.helperLabelStub.inflate();
+            this.helperLabelStub = null;
+            this.helperLabel.setTextColor(this.helperError ? this.errorColor : this.helperTextColor);
+            if (!this.enabled) this.helperLabel.setVisibility(View.INVISIBLE);
+        }
+        return this.helperLabel;
+    }
+
+    /**
+     * @return the counter label, inflated on first use. null when flatRendering is on
+     */
+    protected AppCompatTextView obtainCounterLabel() {
+
+        if (this.counterLabel == null && this.counterLabelStub != null) {
+            this.counterLabel = (AppCompatTextView) this.counterLabelStub.inflate();
+            this.counterLabelStub = null;
+            this.counterLabel.setTextColor(this.counterError ? this.errorColor : DEFAULT_TEXT_COLOR);
+            if (!this.enabled) this.counterLabel.setVisibility(View.INVISIBLE);
+        }
+        return this.counterLabel;
+    }
+
+    /**
+     * @return the view if it's inflated, its ViewStub otherwise, to reach the layout params either way
+     */
+    protected static View viewOrStub(View view, View stub) {
+        return view != null ? view : stub;
     }
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
 
-        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        long metricsStart = TextFieldBoxesMetrics.begin(TextFieldBoxesMetrics.MEASURE);
+        if (this.flatRenderer != null) {
+            this.flatRenderer.measure(widthMeasureSpec, heightMeasureSpec);
+            setMeasuredDimension(this.flatRenderer.getMeasuredWidth(), this.flatRenderer.getMeasuredHeight());
+        } else measureLayout(widthMeasureSpec, heightMeasureSpec);
+        TextFieldBoxesMetrics.end(this, TextFieldBoxesMetrics.MEASURE, metricsStart);
+    }
+
+    /**
+     * measure text_field_boxes_layout.xml, updating its rules first if needed
+     */
+    protected void measureLayout(int widthMeasureSpec, int heightMeasureSpec) {
 
         int widthMode = MeasureSpec.getMode(widthMeasureSpec);
         int heightMode = MeasureSpec.getMode(heightMeasureSpec);
+        boolean endIconVisible = this.endIconImageButton != null
+                && this.endIconImageButton.getVisibility() == View.VISIBLE;
+
+        /* the layout rules only depend on these, skip when none of them changed */
+        if (widthMode != this.measuredWidthMode || heightMode != this.measuredHeightMode
+                || endIconVisible != this.measuredEndIconVisible
+                || this.hasClearButton != this.measuredHasClearButton) {
+
+            this.measuredWidthMode = widthMode;
+            this.measuredHeightMode = heightMode;
+            this.measuredEndIconVisible = endIconVisible;
+            this.measuredHasClearButton = this.hasClearButton;
+            updateWidthRules(widthMode, endIconVisible);
+            updateHeightRules(heightMode);
+        }
+
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+    }
+
+    /**
+     * arrange the EditText, the clear button and the end icon for the width measure mode
+     */
+    protected void updateWidthRules(int widthMode, boolean endIconVisible) {
 
         if (widthMode == MeasureSpec.EXACTLY) {
 
@@ -349,55 +695,51 @@ public class TextFieldBoxes extends FrameLayout {
             this.upperPanel.getLayoutParams().width = ViewGroup.LayoutParams.MATCH_PARENT;
             this.editTextLayout.getLayoutParams().width = ViewGroup.LayoutParams.MATCH_PARENT;
 
-            Log.d(TAG, "onMeasure: 3");
-            if (this.endIconImageButton.getVisibility() == View.VISIBLE) {
+            RelativeLayout.LayoutParams clearButtonParams = (RelativeLayout.LayoutParams)
+                    viewOrStub(this.clearButton, this.clearButtonStub).getLayoutParams();
+            RelativeLayout.LayoutParams endIconParams = (RelativeLayout.LayoutParams)
+                    viewOrStub(this.endIconImageButton, this.endIconImageButtonStub).getLayoutParams();
+            RelativeLayout.LayoutParams editTextParams =
+                    (RelativeLayout.LayoutParams) this.editText.getLayoutParams();
 
-                ((RelativeLayout.LayoutParams) this.clearButton.getLayoutParams())
-                        .addRule(RelativeLayout.RIGHT_OF, 0);
-                ((RelativeLayout.LayoutParams) this.clearButton.getLayoutParams())
-                        .addRule(RelativeLayout.LEFT_OF, R.id.text_field_boxes_end_icon_button);
+            if (endIconVisible) {
+
+                clearButtonParams.addRule(RelativeLayout.RIGHT_OF, 0);
+                clearButtonParams.addRule(RelativeLayout.ALIGN_PARENT_RIGHT, 0);
+                clearButtonParams.addRule(RelativeLayout.LEFT_OF, R.id.text_field_boxes_end_icon_button);
 
                 if (android.os.Build.VERSION.SDK_INT >= 17) {
-                    ((RelativeLayout.LayoutParams) this.clearButton.getLayoutParams())
-                            .addRule(RelativeLayout.END_OF, 0);
-                    ((RelativeLayout.LayoutParams) this.clearButton.getLayoutParams())
-                            .addRule(RelativeLayout.START_OF, R.id.text_field_boxes_end_icon_button);
+                    clearButtonParams.addRule(RelativeLayout.END_OF, 0);
+                    clearButtonParams.addRule(RelativeLayout.ALIGN_PARENT_END, 0);
+                    clearButtonParams.addRule(RelativeLayout.START_OF, R.id.text_field_boxes_end_icon_button);
                 }
 
-                ((RelativeLayout.LayoutParams) this.endIconImageButton.getLayoutParams())
-                        .addRule(RelativeLayout.RIGHT_OF, 0);
-                ((RelativeLayout.LayoutParams) this.endIconImageButton.getLayoutParams())
-                        .addRule(RelativeLayout.ALIGN_PARENT_RIGHT);
+                endIconParams.addRule(RelativeLayout.RIGHT_OF, 0);
+                endIconParams.addRule(RelativeLayout.ALIGN_PARENT_RIGHT);
 
                 if (android.os.Build.VERSION.SDK_INT >= 17) {
-                    ((RelativeLayout.LayoutParams) this.endIconImageButton.getLayoutParams())
-                            .addRule(RelativeLayout.END_OF, 0);
-                    ((RelativeLayout.LayoutParams) this.endIconImageButton.getLayoutParams())
-                            .addRule(RelativeLayout.ALIGN_PARENT_END);
+                    endIconParams.addRule(RelativeLayout.END_OF, 0);
+                    endIconParams.addRule(RelativeLayout.ALIGN_PARENT_END);
                 }
 
                 if (this.hasClearButton)
-                    ((RelativeLayout.LayoutParams) this.editText.getLayoutParams())
-                            .addRule(RelativeLayout.LEFT_OF, R.id.text_field_boxes_clear_button);
+                    editTextParams.addRule(RelativeLayout.LEFT_OF, R.id.text_field_boxes_clear_button);
                 else
-                    ((RelativeLayout.LayoutParams) this.editText.getLayoutParams())
-                            .addRule(RelativeLayout.LEFT_OF, R.id.text_field_boxes_end_icon_button);
+                    editTextParams.addRule(RelativeLayout.LEFT_OF, R.id.text_field_boxes_end_icon_button);
 
             } else {
-                ((RelativeLayout.LayoutParams) this.clearButton.getLayoutParams())
-                        .addRule(RelativeLayout.RIGHT_OF, 0);
-                ((RelativeLayout.LayoutParams) this.clearButton.getLayoutParams())
-                        .addRule(RelativeLayout.ALIGN_PARENT_RIGHT);
+
+                clearButtonParams.addRule(RelativeLayout.RIGHT_OF, 0);
+                clearButtonParams.addRule(RelativeLayout.LEFT_OF, 0);
+                clearButtonParams.addRule(RelativeLayout.ALIGN_PARENT_RIGHT);
 
                 if (android.os.Build.VERSION.SDK_INT >= 17) {
-                    ((RelativeLayout.LayoutParams) this.clearButton.getLayoutParams())
-                            .addRule(RelativeLayout.END_OF, 0);
-                    ((RelativeLayout.LayoutParams) this.clearButton.getLayoutParams())
-                            .addRule(RelativeLayout.ALIGN_PARENT_END);
+                    clearButtonParams.addRule(RelativeLayout.END_OF, 0);
+                    clearButtonParams.addRule(RelativeLayout.START_OF, 0);
+                    clearButtonParams.addRule(RelativeLayout.ALIGN_PARENT_END);
                 }
 
-                ((RelativeLayout.LayoutParams) this.editText.getLayoutParams())
-                        .addRule(RelativeLayout.LEFT_OF, R.id.text_field_boxes_clear_button);
+                editTextParams.addRule(RelativeLayout.LEFT_OF, R.id.text_field_boxes_clear_button);
             }
 
         } else if (widthMode == MeasureSpec.AT_MOST) {
@@ -407,6 +749,12 @@ public class TextFieldBoxes extends FrameLayout {
             this.upperPanel.getLayoutParams().width = ViewGroup.LayoutParams.WRAP_CONTENT;
             this.editTextLayout.getLayoutParams().width = ViewGroup.LayoutParams.WRAP_CONTENT;
         }
+    }
+
+    /**
+     * pin the bottom line and the bottom part to the bottom for the height measure mode
+     */
+    protected void updateHeightRules(int heightMode) {
 
         if (heightMode == MeasureSpec.EXACTLY) {
 
@@ -432,9 +780,72 @@ public class TextFieldBoxes extends FrameLayout {
             this.panel.getLayoutParams().height = ViewGroup.LayoutParams.WRAP_CONTENT;
             this.rightShell.getLayoutParams().height = ViewGroup.LayoutParams.WRAP_CONTENT;
             this.upperPanel.getLayoutParams().height = ViewGroup.LayoutParams.WRAP_CONTENT;
+
+            /* back to the rules in the layout xml */
+            ((RelativeLayout.LayoutParams) this.bottomPart.getLayoutParams())
+                    .addRule(RelativeLayout.ALIGN_PARENT_BOTTOM, 0);
+            ((RelativeLayout.LayoutParams) this.bottomLine.getLayoutParams())
+                    .addRule(RelativeLayout.ALIGN_PARENT_BOTTOM, 0);
+            ((RelativeLayout.LayoutParams) this.panel.getLayoutParams())
+                    .addRule(RelativeLayout.ABOVE, 0);
+            ((RelativeLayout.LayoutParams) this.bottomPart.getLayoutParams())
+                    .addRule(RelativeLayout.BELOW, R.id.text_field_boxes_panel);
+            ((RelativeLayout.LayoutParams) this.bottomLine.getLayoutParams())
+                    .addRule(RelativeLayout.BELOW, R.id.text_field_boxes_upper_panel);
         }
     }
 
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+
+        if (this.flatRenderer != null) this.flatRenderer.layout();
+        else super.onLayout(changed, left, top, right, bottom);
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+
+        if (this.flatRenderer != null) this.flatRenderer.drawBackground(canvas);
+        super.dispatchDraw(canvas);
+        if (this.flatRenderer != null) this.flatRenderer.drawForeground(canvas);
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+
+        /* only the drawn panel takes clicks, as the panel view does */
+        if (this.flatRenderer != null && event.getActionMasked() == MotionEvent.ACTION_DOWN
+                && !this.flatRenderer.isPanelTouchable(event.getX(), event.getY()))
+            return false;
+        return super.onTouchEvent(event);
+    }
+
+    @Override
+    protected void drawableStateChanged() {
+
+        super.drawableStateChanged();
+        if (this.flatRenderer != null) this.flatRenderer.setDrawableState(getDrawableState());
+    }
+
+    @Override
+    public void drawableHotspotChanged(float x, float y) {
+
+        super.drawableHotspotChanged(x, y);
+        if (this.flatRenderer != null) this.flatRenderer.setHotspot(x, y);
+    }
+
+    @Override
+    protected boolean verifyDrawable(Drawable who) {
+        return super.verifyDrawable(who) || (this.flatRenderer != null && this.flatRenderer.verifyDrawable(who));
+    }
+
+    @Override
+    public void jumpDrawablesToCurrentState() {
+
+        super.jumpDrawablesToCurrentState();
+        if (this.flatRenderer != null) this.flatRenderer.jumpToCurrentState();
+    }
+
     protected void handleAttributes(Context context, AttributeSet attrs) {
 
         try {
@@ -469,204 +880,754 @@ public class TextFieldBoxes extends FrameLayout {
             this.panelBackgroundColor = styledAttrs
                     .getColor(R.styleable.TextFieldBoxes_panelBackgroundColor, DEFAULT_BG_COLOR);
 
-            /* Characters counter */
-            this.maxCharacters = styledAttrs.getInt(R.styleable.TextFieldBoxes_maxCharacters, 0);
-            this.minCharacters = styledAttrs.getInt(R.styleable.TextFieldBoxes_minCharacters, 0);
+            /* Characters counter */
+            this.maxCharacters = styledAttrs.getInt(R.styleable.TextFieldBoxes_maxCharacters, 0);
+            this.minCharacters = styledAttrs.getInt(R.styleable.TextFieldBoxes_minCharacters, 0);
+            this.maxCharactersHardLimit = styledAttrs.getBoolean(R.styleable.TextFieldBoxes_maxCharactersHardLimit, false);
+
+            /* Others */
+            this.enabled = styledAttrs.getBoolean(R.styleable.TextFieldBoxes_enabled, true);
+            this.singleLine = styledAttrs.getBoolean(R.styleable.TextFieldBoxes_singleLine, false);
+            this.maxLines = styledAttrs.getInt(R.styleable.TextFieldBoxes_maxLines, Integer.MAX_VALUE);
+            this.iconSignifierResourceId = styledAttrs.
+                    getResourceId(R.styleable.TextFieldBoxes_iconSignifier, 0);
+            this.endIconResourceId = styledAttrs.
+                    getResourceId(R.styleable.TextFieldBoxes_endIcon, 0);
+            this.hasClearButton = styledAttrs.getBoolean(R.styleable.TextFieldBoxes_hasClearButton, false);
+            this.hasFocus = styledAttrs.getBoolean(R.styleable.TextFieldBoxes_hasFocus, false);
+            this.flatRendering = styledAttrs.getBoolean(R.styleable.TextFieldBoxes_flatRendering, false);
+
+            styledAttrs.recycle();
+
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * lower the labelText labelText Label when there is no text at losing focus
+     */
+    protected void deactivate() {
+
+        long metricsStart = TextFieldBoxesMetrics.begin(TextFieldBoxesMetrics.DEACTIVATE);
+        if (this.editText.length() == 0) {
+
+            transitionLabel(false);
+            setEditTextShown(false);
+
+            if (this.editText.hasFocus()) {
+                inputMethodManager.hideSoftInputFromWindow(editText.getWindowToken(), 0);
+                this.editText.clearFocus();
+            }
+        }
+        this.activated = false;
+        TextFieldBoxesMetrics.end(this, TextFieldBoxesMetrics.DEACTIVATE, metricsStart);
+    }
+
+    /**
+     * raise the labelText labelText Label when gaining focus
+     */
+    protected void activate() {
+
+        long metricsStart = TextFieldBoxesMetrics.begin(TextFieldBoxesMetrics.ACTIVATE);
+        setEditTextShown(true);
+        transitionLabel(true);
+        activated = true;
+        TextFieldBoxesMetrics.end(this, TextFieldBoxesMetrics.ACTIVATE, metricsStart);
+    }
+
+    /**
+     * raise or lower the label, the EditText fades in and out along with it.
+     * jumps straight to the end while instantLabelTransition is on or the view is off-screen
+     */
+    protected void transitionLabel(boolean raise) {
+
+        float target = raise ? 1f : 0f;
+        if (this.instantLabelTransition || getWindowToken() == null) this.labelAnimator.jumpTo(target);
+        else this.labelAnimator.animateTo(target, ANIMATION_DURATION);
+    }
+
+    /**
+     * show or hide the EditText along with the buttons at its end
+     */
+    protected void setEditTextShown(boolean shown) {
+
+        int visibility = shown ? View.VISIBLE : View.GONE;
+        if (this.editTextLayout != null) this.editTextLayout.setVisibility(visibility);
+        else this.editText.setVisibility(visibility);
+    }
+
+    /**
+     * set the color of the labelText Label, EditText cursor, icon signifier and the underline
+     *
+     * @param colorRes color resource
+     */
+    protected void setHighlightColor(int colorRes) {
+
+        long metricsStart = TextFieldBoxesMetrics.begin(TextFieldBoxesMetrics.HIGHLIGHT_COLOR);
+        if (this.flatRenderer != null) {
+            this.flatRenderer.setLabelColor(colorRes);
+            this.flatRenderer.setBottomLineColor(colorRes);
+        } else {
+            this.floatingLabel.setTextColor(colorRes);
+            this.bottomLine.setBackgroundColor(colorRes);
+        }
+        Utils.setCursorDrawableColor(this.editText, colorRes);
+
+        if (this.iconImageButton != null) {
+            if (getIsResponsiveIconColor()) {
+                this.iconImageButton.setColorFilter(colorRes);
+                if (colorRes == DEFAULT_TEXT_COLOR) this.iconImageButton.setAlpha(0.54f);
+                else this.iconImageButton.setAlpha(1f);
+            }
+
+            if (colorRes == DEFAULT_DISABLED_TEXT_COLOR) this.iconImageButton.setAlpha(0.35f);
+        }
+        TextFieldBoxesMetrics.end(this, TextFieldBoxesMetrics.HIGHLIGHT_COLOR, metricsStart);
+    }
+
+    /**
+     * check if the character count meets the upper or lower limits,
+     * <p>
+     * if exceeds limit, setCounterError()
+     * otherwise removeCounterError()
+     * <p>
+     * <i>NOTE: COUNTED BY THE CharacterCountPolicy, SEE setCharacterCountPolicy()</i>
+     */
+    protected void updateCounterText() {
+
+        if (this.batchDepth > 0) {
+            this.pendingCounterUpdate = true;
+            return;
+        }
+
+        long metricsStart = TextFieldBoxesMetrics.begin(TextFieldBoxesMetrics.COUNTER_UPDATE);
+
+        /* Show clear button if there is anything */
+        if (hasClearButton)
+            if (this.editText.length() == 0) showClearButton(false);
+            else showClearButton(true);
+
+        if (this.counterSuffix == null) buildCounterSuffix();
+        if (!hasCharacterLimits()) {
+            /* nothing to count nor to show without limits */
+            if (this.counterLabelCount != 0) {
+                this.counterLabelCount = 0;
+                setCounterLabelText(this.counterChars, 0);
+            }
+            if (this.counterError) removeCounterError();
+        } else {
+            /* counted by the characterCountPolicy, from scratch only if the count went stale */
+            int length = obtainCharacterCount();
+
+            /* the label only changes with the count, or after the limits changed */
+            if (length != this.counterLabelCount) {
+                this.counterLabelCount = length;
+                setCounterLabelText(this.counterChars, writeCounterChars(length));
+            }
+
+            if ((this.minCharacters > 0 && length < this.minCharacters)
+                    || (this.maxCharacters > 0 && length > this.maxCharacters)) setCounterError();
+            else removeCounterError();
+        }
+        TextFieldBoxesMetrics.end(this, TextFieldBoxesMetrics.COUNTER_UPDATE, metricsStart);
+    }
+
+    protected boolean hasCharacterLimits() {
+        return this.maxCharacters > 0 || this.minCharacters > 0;
+    }
+
+    /**
+     * build the static part of the counter label after the count from the limits:
+     * " / min-max" for MAX & MIN, " / max" for MAX ONLY, " / min+" for MIN ONLY, nothing otherwise
+     */
+    protected void buildCounterSuffix() {
+
+        String suffix;
+        if (this.maxCharacters > 0) {
+            if (this.minCharacters > 0)
+                suffix = " / " + Integer.toString(this.minCharacters) + "-" + Integer.toString(this.maxCharacters);
+            else suffix = " / " + Integer.toString(this.maxCharacters);
+        } else {
+            if (this.minCharacters > 0) suffix = " / " + Integer.toString(this.minCharacters) + "+";
+            else suffix = "";
+        }
+
+        this.counterSuffix = suffix.toCharArray();
+        this.counterChars = new char[MAX_COUNT_DIGITS + this.counterSuffix.length];
+        this.counterLabelCount = -1;
+    }
+
+    /**
+     * write the count followed by the counterSuffix into counterChars
+     *
+     * @return the number of chars written
+     */
+    protected int writeCounterChars(int count) {
+
+        if (count < 0) count = 0;
+        int digits = 1;
+        for (int rest = count / 10; rest > 0; rest /= 10) digits++;
+        for (int i = digits - 1; i >= 0; i--, count /= 10)
+            this.counterChars[i] = (char) ('0' + count % 10);
+        System.arraycopy(this.counterSuffix, 0, this.counterChars, digits, this.counterSuffix.length);
+        return digits + this.counterSuffix.length;
+    }
+
+    /**
+     * <i>NOTE: THE LABEL KEEPS THE ARRAY, ONLY CHANGE IT RIGHT BEFORE CALLING THIS AGAIN</i>
+     */
+    protected void setCounterLabelText(char[] counterChars, int length) {
+
+        if (this.flatRenderer != null) this.flatRenderer.setCounterText(counterChars, length);
+        else if (this.counterLabel != null || length > 0) obtainCounterLabel().setText(counterChars, 0, length);
+    }
+
+    protected void setCounterLabelColor(int colorRes) {
+
+        if (this.flatRenderer != null) this.flatRenderer.setCounterColor(colorRes);
+        else if (this.counterLabel != null) this.counterLabel.setTextColor(colorRes);
+    }
+
+    protected void setHelperLabelText(String helperText) {
+
+        if (this.flatRenderer != null) this.flatRenderer.setHelperText(helperText);
+        else if (this.helperLabel != null || (helperText != null && helperText.length() > 0))
+            obtainHelperLabel().setText(helperText);
+    }
+
+    protected void setHelperLabelColor(int colorRes) {
+
+        if (this.flatRenderer != null) this.flatRenderer.setHelperColor(colorRes);
+        else if (this.helperLabel != null) this.helperLabel.setTextColor(colorRes);
+    }
+
+    /**
+     * @return the current count, counting the whole text first if it's stale
+     */
+    protected int obtainCharacterCount() {
+
+        if (!this.characterCountValid) recountCharacters();
+        return this.characterCount;
+    }
+
+    /**
+     * count the whole EditText text again, the TextWatcher keeps it up to date afterwards
+     */
+    protected void recountCharacters() {
+
+        Editable editable = this.editText.getText();
+        this.characterCount = this.characterCountPolicy.count(editable, 0, editable.length());
+        this.characterCountValid = true;
+    }
+
+    /**
+     * set highlight color and counter Label text color to error color
+     */
+    protected void setCounterError() {
+
+        this.counterError = true;
+        updateVisualState();
+    }
+
+    /**
+     * set highlight color to primary color if having focus,
+     * otherwise set to DEFAULT_TEXT_COLOR
+     * set counterLabel Label text color to DEFAULT_TEXT_COLOR
+     */
+    protected void removeCounterError() {
+
+        this.counterError = false;
+        updateVisualState();
+    }
+
+    /**
+     * set highlight color and helperLabel Label text color to error color
+     * set helperLabel Label text to error message
+     *
+     * @param errorText error message
+     */
+    public void setError(String errorText) {
+
+        if (this.enabled) {
+            this.helperError = true;
+            this.errorText = errorText;
+            setHelperLabelColor(this.errorColor);
+            setHelperLabelText(errorText);
+            updateVisualState();
+        }
+    }
 
-            /* Others */
-            this.enabled = styledAttrs.getBoolean(R.styleable.TextFieldBoxes_enabled, true);
-            this.singleLine = styledAttrs.getBoolean(R.styleable.TextFieldBoxes_singleLine, false);
-            this.maxLines = styledAttrs.getInt(R.styleable.TextFieldBoxes_maxLines, Integer.MAX_VALUE);
-            this.iconSignifierResourceId = styledAttrs.
-                    getResourceId(R.styleable.TextFieldBoxes_iconSignifier, 0);
-            this.endIconResourceId = styledAttrs.
-                    getResourceId(R.styleable.TextFieldBoxes_endIcon, 0);
-            this.hasClearButton = styledAttrs.getBoolean(R.styleable.TextFieldBoxes_hasClearButton, false);
-            this.hasFocus = styledAttrs.getBoolean(R.styleable.TextFieldBoxes_hasFocus, false);
+    /**
+     * set highlight to primary color if having focus,
+     * otherwise set to DEFAULT_TEXT_COLOR
+     * set helperLabel Label text color to DEFAULT_TEXT_COLOR
+     * <p>
+     * <i>NOTE: WILL BE CALLED WHEN THE EDITTEXT CHANGES, DOES NOTHING IF THERE IS NO ERROR</i>
+     */
+    public void removeError() {
 
-            styledAttrs.recycle();
+        if (!this.helperError) return;
+        this.helperError = false;
+        this.errorText = null;
+        setHelperLabelColor(this.helperTextColor);
+        setHelperLabelText(this.helperText);
+        updateVisualState();
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    /**
+     * @return the visual state for the current enabled, error and focus states, in that priority
+     */
+    protected int resolveVisualState() {
+
+        if (!this.enabled) return STATE_DISABLED;
+        if (this.helperError) return STATE_ERROR;
+        if (this.counterError) return STATE_COUNTER_ERROR;
+        if (this.hasFocus) return STATE_FOCUSED;
+        return STATE_UNFOCUSED;
     }
 
     /**
-     * lower the labelText labelText Label when there is no text at losing focus
+     * @return whether the field keeps its TextFieldBoxesForm from being valid:
+     * enabled and on error, a disabled field is never invalid
      */
-    protected void deactivate() {
+    protected boolean isInvalidInForm() {
+        return this.enabled && (this.helperError || this.counterError);
+    }
 
-        if (this.editText.getText().toString().equals("")) {
+    /**
+     * resolve the visual state and only touch the views if it or its colors changed
+     */
+    protected void updateVisualState() {
 
-            ViewCompat.animate(floatingLabel)
-                    .alpha(1)
-                    .scaleX(1)
-                    .scaleY(1)
-                    .translationY(0)
-                    .setDuration(ANIMATION_DURATION);
+        /* the form keeps track of the error state even while the colors are deferred */
+        if (this.form != null) this.form.onFieldErrorChanged(this.formIndex, isInvalidInForm());
 
-            this.editTextLayout.setVisibility(View.GONE);
+        if (this.batchDepth > 0) {
+            this.pendingVisualState = true;
+            return;
+        }
 
-            if (this.editText.hasFocus()) {
-                inputMethodManager.hideSoftInputFromWindow(editText.getWindowToken(), 0);
-                this.editText.clearFocus();
-            }
+        this.onError = this.helperError || this.counterError;
+
+        int state = resolveVisualState();
+        int highlightColor;
+        switch (state) {
+            case STATE_DISABLED:
+                highlightColor = DEFAULT_DISABLED_TEXT_COLOR;
+                break;
+            case STATE_ERROR:
+            case STATE_COUNTER_ERROR:
+                highlightColor = this.errorColor;
+                break;
+            case STATE_FOCUSED:
+                highlightColor = this.primaryColor;
+                break;
+            default:
+                highlightColor = DEFAULT_TEXT_COLOR;
+        }
+        if (state != this.visualState || highlightColor != this.appliedHighlightColor) {
+            this.visualState = state;
+            this.appliedHighlightColor = highlightColor;
+            setHighlightColor(highlightColor);
+        }
+
+        int counterLabelColor = this.counterError ? this.errorColor : DEFAULT_TEXT_COLOR;
+        if (counterLabelColor != this.appliedCounterLabelColor) {
+            this.appliedCounterLabelColor = counterLabelColor;
+            setCounterLabelColor(counterLabelColor);
         }
-        this.activated = false;
     }
 
     /**
-     * raise the labelText labelText Label when gaining focus
+     * apply the visual state again even if it did not change, e.g. for newly created views
      */
-    protected void activate() {
+    protected void refreshVisualState() {
+
+        this.visualState = -1;
+        updateVisualState();
+    }
+
+    /* Batch Updates */
+
+    /**
+     * start a batch of changes, e.g. when binding a whole form.
+     * until the matching endUpdate(), setters only store their values:
+     * layout, invalidation, counter updates and the highlight color are applied once at the end.
+     * batches can be nested.
+     */
+    public void beginUpdate() {
+        this.batchDepth++;
+    }
 
-        this.editTextLayout.setVisibility(View.VISIBLE);
+    /**
+     * close a batch started by beginUpdate(), applying the deferred work if it's the outermost
+     */
+    public void endUpdate() {
 
-        if (this.editText.getText().toString().equals("") && !isActivated()) {
+        if (this.batchDepth == 0) return;
+        if (--this.batchDepth > 0) return;
 
-            this.editText.setAlpha(0f);
-            this.floatingLabel.setScaleX(1f);
-            this.floatingLabel.setScaleY(1f);
-            this.floatingLabel.setTranslationY(0);
+        if (this.pendingCounterUpdate) {
+            this.pendingCounterUpdate = false;
+            updateCounterText();
+        }
+        if (this.pendingVisualState) {
+            this.pendingVisualState = false;
+            updateVisualState();
         }
+        if (this.pendingLayout) {
+            this.pendingLayout = false;
+            super.requestLayout();
+        }
+        if (this.pendingInvalidate) {
+            this.pendingInvalidate = false;
+            super.invalidate();
+        }
+    }
+
+    public boolean isInBatchUpdate() {
+        return this.batchDepth > 0;
+    }
 
-        ViewCompat.animate(this.editText)
-                .alpha(1f)
-                .setDuration(ANIMATION_DURATION);
+    @Override
+    public void requestLayout() {
 
-        ViewCompat.animate(this.floatingLabel)
-                .scaleX(0.75f)
-                .scaleY(0.75f)
-                .translationY(-labelTopMargin + getContext().getResources().getDimensionPixelOffset(R.dimen.text_field_boxes_margin_top))
-                .setDuration(ANIMATION_DURATION);
+        /* also stops the requests coming up from the children, they stay marked for layout */
+        if (this.batchDepth > 0) this.pendingLayout = true;
+        else super.requestLayout();
+    }
 
-        activated = true;
+    @Override
+    public void invalidate() {
+
+        if (this.batchDepth > 0) this.pendingInvalidate = true;
+        else super.invalidate();
+    }
+
+    /* Validation */
+
+    protected ValidationPipeline obtainValidationPipeline() {
+
+        if (this.validationPipeline == null) this.validationPipeline = new ValidationPipeline(this);
+        return this.validationPipeline;
     }
 
     /**
-     * set the color of the labelText Label, EditText cursor, icon signifier and the underline
+     * add a validator that checks the text on a background thread after each change.
+     * the first error message found is shown with setError(), removeError() is called once it's valid.
+     * results for text that has changed in the meantime are dropped.
      *
-     * @param colorRes color resource
+     * @param validator validator to run after the ones already added
      */
-    protected void setHighlightColor(int colorRes) {
+    public void addValidator(Validator validator) {
+        obtainValidationPipeline().addValidator(validator);
+    }
 
-        this.floatingLabel.setTextColor(colorRes);
-        Utils.setCursorDrawableColor(this.editText, colorRes);
+    public void removeValidator(Validator validator) {
+        if (this.validationPipeline != null) this.validationPipeline.removeValidator(validator);
+    }
 
-        if (getIsResponsiveIconColor()) {
-            this.iconImageButton.setColorFilter(colorRes);
-            if (colorRes == DEFAULT_TEXT_COLOR) this.iconImageButton.setAlpha(0.54f);
-            else this.iconImageButton.setAlpha(1f);
-        }
+    /**
+     * set how long the text has to stay unchanged before validating. 300ms by default.
+     *
+     * @param debounceMillis debounce in milliseconds, 0 to validate on every change
+     */
+    public void setValidationDebounce(long debounceMillis) {
+        obtainValidationPipeline().setDebounceMillis(debounceMillis);
+    }
 
-        if (colorRes == DEFAULT_DISABLED_TEXT_COLOR) this.iconImageButton.setAlpha(0.35f);
+    /**
+     * set the executor the validators run on, a single thread shared by all fields by default
+     */
+    public void setValidationExecutor(ExecutorService executor) {
+        obtainValidationPipeline().setExecutor(executor);
+    }
 
-        this.bottomLine.setBackgroundColor(colorRes);
+    /**
+     * validate the current text now, without waiting for the debounce
+     */
+    public void validate() {
+        if (this.validationPipeline != null) this.validationPipeline.validateNow();
     }
 
+    /* Text Changes */
+
     /**
-     * check if the character count meets the upper or lower limits,
+     * subscribe to the text changes, without adding another TextWatcher to the EditText.
+     * configure the returned subscription with debounce(), throttle() and distinctUntilChanged().
      * <p>
-     * if exceeds limit, setCounterError()
-     * otherwise removeCounterError()
-     * <p>
-     * <i>NOTE: SPACE AND LINE FEED WILL NOT COUNT</i>
+     * <i>NOTE: PENDING DELIVERIES ARE DROPPED WHEN THE VIEW IS DETACHED</i>
+     *
+     * @param listener called on the main thread with the latest text
+     * @return the subscription, call unsubscribe() on it to stop listening
      */
-    protected void updateCounterText() {
+    public TextChangeSubscription subscribeTextChanges(TextChangeSubscription.Listener listener) {
 
-        /* Show clear button if there is anything */
-        if (hasClearButton)
-            if (getText().length() == 0) showClearButton(false);
-            else showClearButton(true);
+        if (this.textChangeSubscriptions == null) this.textChangeSubscriptions = new ArrayList<>();
+        TextChangeSubscription subscription = new TextChangeSubscription(this, listener);
+        this.textChangeSubscriptions.add(subscription);
+        this.textChangeSubscriptionSnapshot = null;
+        return subscription;
+    }
 
-        /* Don't Count Space & Line Feed */
-        int length = getText().replaceAll(" ", "").replaceAll("\n", "").length();
-        String lengthStr = Integer.toString(length) + " / ";
+    protected void removeTextChangeSubscription(TextChangeSubscription subscription) {
 
-        if (this.maxCharacters > 0) {
-            if (this.minCharacters > 0) {
-                /* MAX & MIN */
-                this.counterLabel.setText(lengthStr + Integer.toString(this.minCharacters)
-                        + "-" + Integer.toString(this.maxCharacters));
-                if (length < this.minCharacters || length > this.maxCharacters) setCounterError();
-                else removeCounterError();
+        if (this.textChangeSubscriptions != null && this.textChangeSubscriptions.remove(subscription))
+            this.textChangeSubscriptionSnapshot = null;
+    }
 
-            } else {
-                /* MAX ONLY */
-                this.counterLabel.setText(lengthStr + Integer.toString(this.maxCharacters) + "");
-                if (length > this.maxCharacters) setCounterError();
-                else removeCounterError();
-            }
-        } else {
-            if (this.minCharacters > 0) {
-                /* MIN ONLY */
-                this.counterLabel.setText(lengthStr + Integer.toString(this.minCharacters) + "+");
-                if (length < this.minCharacters) setCounterError();
-                else removeCounterError();
+    protected TextChangeSubscription[] obtainTextChangeSubscriptionSnapshot() {
 
-            } else this.counterLabel.setText("");
-        }
+        if (this.textChangeSubscriptionSnapshot == null)
+            this.textChangeSubscriptionSnapshot = this.textChangeSubscriptions.toArray(
+                    new TextChangeSubscription[this.textChangeSubscriptions.size()]);
+        return this.textChangeSubscriptionSnapshot;
     }
 
     /**
-     * set highlight color and counter Label text color to error color
+     * apply a whole state in one batch, without animating the label, without touching the focus
+     * (unless the state disables a focused field), without running the validators
+     * and without notifying the text change subscriptions. meant for rebinding a recycled row of a list.
+     *
+     * @param state the state to show, see unbind()
      */
-    protected void setCounterError() {
+    public void bind(TextFieldBoxesState state) {
+
+        boolean instant = this.instantLabelTransition;
+        this.instantLabelTransition = true;
+        beginUpdate();
+
+        if (state.enabled != this.enabled) setEnabled(state.enabled);
+        if (!TextUtils.equals(this.editText.getText(), state.text)) {
+            restoreText(state.text);
+            this.editText.setSelection(this.editText.length());
+        }
+        if (this.validationPipeline != null) this.validationPipeline.cancel();
+
+        setLabelText(state.labelText);
+        setHelperText(state.helperText);
+        setHint(state.hint);
+        setPrefix(state.prefix);
+        setSuffix(state.suffix);
+        /* each of these rebuilds the counter buffers, only call them for new limits */
+        if (state.maxCharacters != this.maxCharacters) setMaxCharacters(state.maxCharacters);
+        if (state.minCharacters != this.minCharacters) setMinCharacters(state.minCharacters);
+        setIconSignifier(state.iconSignifierResourceId);
+        setEndIcon(state.endIconResourceId);
+        setHasClearButton(state.hasClearButton);
+        if (state.errorText != null) setError(state.errorText);
+        else removeError();
+
+        /* raise or lower the label for the new text right away */
+        snapLabel(this.editText.length() != 0 || this.editText.hasFocus());
 
-        this.onError = true;
-        setHighlightColor(this.errorColor);
-        this.counterLabel.setTextColor(this.errorColor);
+        updateCounterText();
+        endUpdate();
+        this.instantLabelTransition = instant;
     }
 
     /**
-     * set highlight color to primary color if having focus,
-     * otherwise set to DEFAULT_TEXT_COLOR
-     * set counterLabel Label text color to DEFAULT_TEXT_COLOR
+     * put a text back into the EditText without notifying the text change subscriptions,
+     * the validators or the form of it, then mark the form value as changed once
      */
-    protected void removeCounterError() {
+    protected void restoreText(String text) {
 
-        this.onError = false;
-        if (this.hasFocus) setHighlightColor(this.primaryColor);
-        else setHighlightColor(this.DEFAULT_TEXT_COLOR);
-        this.counterLabel.setTextColor(this.DEFAULT_TEXT_COLOR);
+        this.restoringText = true;
+        this.editText.setText(text);
+        this.restoringText = false;
+        if (this.form != null) this.form.onFieldTextChanged(this.formIndex);
     }
 
     /**
-     * set highlight color and helperLabel Label text color to error color
-     * set helperLabel Label text to error message
+     * raise or lower the label without animating and without touching the focus
+     */
+    protected void snapLabel(boolean raise) {
+
+        boolean instant = this.instantLabelTransition;
+        this.instantLabelTransition = true;
+        if (raise) activate();
+        else {
+            transitionLabel(false);
+            setEditTextShown(false);
+            this.activated = false;
+        }
+        this.instantLabelTransition = instant;
+    }
+
+    /**
+     * finish the running label transition, drop the pending validation and text change deliveries
+     * and capture the current state, to be passed to bind() when the field is shown again
      *
-     * @param errorText error message
+     * @return the current state of the field
      */
-    public void setError(String errorText) {
+    public TextFieldBoxesState unbind() {
+
+        if (this.labelAnimator != null) this.labelAnimator.finish();
+        if (this.validationPipeline != null) this.validationPipeline.cancel();
+        if (this.textChangeSubscriptions != null)
+            for (TextChangeSubscription subscription : this.textChangeSubscriptions)
+                subscription.cancelPending();
+
+        return new TextFieldBoxesState.Builder()
+                .setText(getText())
+                .setLabelText(this.labelText)
+                .setHelperText(this.helperText)
+                .setHint(this.hint)
+                .setPrefix(this.prefix)
+                .setSuffix(this.suffix)
+                .setErrorText(this.helperError ? this.errorText : null)
+                .setMaxCharacters(this.maxCharacters)
+                .setMinCharacters(this.minCharacters)
+                .setEnabled(this.enabled)
+                .setIconSignifier(this.iconSignifierResourceId)
+                .setEndIcon(this.endIconResourceId)
+                .setHasClearButton(this.hasClearButton)
+                .build();
+    }
+
+    /* Saved State */
 
-        if (this.enabled) {
-            this.onError = true;
-            setHighlightColor(this.errorColor);
-            this.helperLabel.setTextColor(this.errorColor);
-            this.helperLabel.setText(errorText);
+    /**
+     * the state of the children is saved by the field itself,
+     * they share the same ids across all the fields of a screen
+     */
+    @Override
+    protected void dispatchSaveInstanceState(SparseArray<Parcelable> container) {
+        dispatchFreezeSelfOnly(container);
+    }
+
+    @Override
+    protected void dispatchRestoreInstanceState(SparseArray<Parcelable> container) {
+        dispatchThawSelfOnly(container);
+    }
+
+    @Override
+    protected Parcelable onSaveInstanceState() {
+
+        SavedState state = new SavedState(super.onSaveInstanceState());
+        state.text = getText();
+        state.errorText = this.helperError ? this.errorText : null;
+        state.activated = this.activated;
+        state.hasFocus = this.editText.hasFocus();
+        state.selectionStart = this.editText.getSelectionStart();
+        state.selectionEnd = this.editText.getSelectionEnd();
+        return state;
+    }
+
+    /**
+     * rebuild the visuals in one batch, without animating the label, without running the validators
+     * and without notifying the text change subscriptions of the restored text
+     */
+    @Override
+    protected void onRestoreInstanceState(Parcelable parcelable) {
+
+        if (!(parcelable instanceof SavedState)) {
+            super.onRestoreInstanceState(parcelable);
+            return;
         }
+        SavedState state = (SavedState) parcelable;
+        super.onRestoreInstanceState(state.getSuperState());
+
+        boolean instant = this.instantLabelTransition;
+        this.instantLabelTransition = true;
+        beginUpdate();
+
+        if (!TextUtils.equals(this.editText.getText(), state.text)) restoreText(state.text);
+        if (state.hasFocus && this.enabled) {
+            /* gaining the focus sets a text to make the cursor blink, it isn't reported either */
+            this.restoringText = true;
+            this.editText.requestFocus();
+            this.restoringText = false;
+        }
+        int length = this.editText.length();
+        if (state.selectionStart >= 0 && state.selectionEnd >= 0)
+            this.editText.setSelection(Math.min(state.selectionStart, length), Math.min(state.selectionEnd, length));
+        if (this.validationPipeline != null) this.validationPipeline.cancel();
+        if (this.textChangeSubscriptions != null)
+            for (TextChangeSubscription subscription : this.textChangeSubscriptions)
+                subscription.cancelPending();
+
+        if (state.errorText != null) setError(state.errorText);
+        else removeError();
+        snapLabel(state.activated || length != 0 || this.editText.hasFocus());
+
+        updateCounterText();
+        updateVisualState();
+        endUpdate();
+        this.instantLabelTransition = instant;
     }
 
     /**
-     * set highlight to primary color if having focus,
-     * otherwise set to DEFAULT_TEXT_COLOR
-     * set helperLabel Label text color to DEFAULT_TEXT_COLOR
-     * <p>
-     * <i>NOTE: WILL BE CALLED WHEN THE EDITTEXT CHANGES</i>
+     * text, error message, activation, focus and cursor position, packed in a few fields
      */
-    public void removeError() {
+    protected static class SavedState extends BaseSavedState {
+
+        private static final int FLAG_ACTIVATED = 1;
+        private static final int FLAG_HAS_FOCUS = 1 << 1;
+
+        String text;
+        String errorText;
+        boolean activated;
+        boolean hasFocus;
+        int selectionStart;
+        int selectionEnd;
+
+        SavedState(Parcelable superState) {
+            super(superState);
+        }
+
+        private SavedState(Parcel in) {
 
-        this.onError = false;
-        if (this.hasFocus) setHighlightColor(this.primaryColor);
-        else setHighlightColor(this.DEFAULT_TEXT_COLOR);
-        this.helperLabel.setTextColor(this.helperTextColor);
-        this.helperLabel.setText(this.helperText);
+            super(in);
+            this.text = in.readString();
+            this.errorText = in.readString();
+            int flags = in.readInt();
+            this.activated = (flags & FLAG_ACTIVATED) != 0;
+            this.hasFocus = (flags & FLAG_HAS_FOCUS) != 0;
+            this.selectionStart = in.readInt();
+            this.selectionEnd = in.readInt();
+        }
+
+        @Override
+        public void writeToParcel(Parcel out, int flags) {
+
+            super.writeToParcel(out, flags);
+            out.writeString(this.text);
+            out.writeString(this.errorText);
+            out.writeInt((this.activated ? FLAG_ACTIVATED : 0) | (this.hasFocus ? FLAG_HAS_FOCUS : 0));
+            out.writeInt(this.selectionStart);
+            out.writeInt(this.selectionEnd);
+        }
+
+        public static final Parcelable.Creator<SavedState> CREATOR = new Parcelable.Creator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel in) {
+                return new SavedState(in);
+            }
+
+            @Override
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+
+        super.onDetachedFromWindow();
+        if (this.labelAnimator != null) this.labelAnimator.finish();
+        if (this.validationPipeline != null) this.validationPipeline.cancel();
+        if (this.textChangeSubscriptions != null)
+            for (TextChangeSubscription subscription : this.textChangeSubscriptions)
+                subscription.cancelPending();
     }
 
     protected void showClearButton(boolean show) {
 
-        if (show) this.clearButton.setVisibility(View.VISIBLE);
-        else this.clearButton.setVisibility(View.GONE);
+        if (show) obtainClearButton().setVisibility(View.VISIBLE);
+        else if (this.clearButton != null) this.clearButton.setVisibility(View.GONE);
     }
 
     /* Text Setters */
@@ -679,22 +1640,22 @@ public class TextFieldBoxes extends FrameLayout {
     public void setText(String text) {
 
         if (text != null) {
-            this.text = text;
-            editText.setText(this.text);
-            if (!text.equals("")) activate();
+            editText.setText(text);
+            if (text.length() != 0) activate();
         }
     }
 
     public void setLabelText(String labelText) {
 
         this.labelText = labelText;
-        this.floatingLabel.setText(this.labelText);
+        if (this.flatRenderer != null) this.flatRenderer.setLabelText(this.labelText);
+        else this.floatingLabel.setText(this.labelText);
     }
 
     public void setHelperText(String helperText) {
 
         this.helperText = helperText;
-        this.helperLabel.setText(this.helperText);
+        setHelperLabelText(this.helperText);
     }
 
     public void setHint(String hint) {
@@ -719,11 +1680,13 @@ public class TextFieldBoxes extends FrameLayout {
     public void setHelperTextColor(int colorRes) {
 
         this.helperTextColor = colorRes;
-        this.helperLabel.setTextColor(this.helperTextColor);
+        setHelperLabelColor(this.helperTextColor);
     }
 
     public void setErrorColor(int colorRes) {
+
         this.errorColor = colorRes;
+        updateVisualState();
     }
 
     /**
@@ -732,7 +1695,7 @@ public class TextFieldBoxes extends FrameLayout {
     public void setPrimaryColor(int colorRes) {
 
         this.primaryColor = colorRes;
-        if (this.hasFocus) setHighlightColor(this.primaryColor);
+        updateVisualState();
     }
 
     public void setPrefixTextColor(int colorRes) {
@@ -750,31 +1713,108 @@ public class TextFieldBoxes extends FrameLayout {
     public void setPanelBackgroundColor(int colorRes) {
 
         this.panelBackgroundColor = colorRes;
-        ((GradientDrawable) ((LayerDrawable) this.panel.getBackground())
+        Drawable background = this.flatRenderer != null
+                ? this.flatRenderer.getPanelBackground() : this.panel.getBackground();
+        ((GradientDrawable) ((LayerDrawable) background)
                 .findDrawableByLayerId(R.id.bg_cover)).setColor(panelBackgroundColor);
+        if (this.flatRenderer != null) invalidate();
     }
 
     /* Characters Counter Setters */
     public void setMaxCharacters(int maxCharacters) {
+
         this.maxCharacters = maxCharacters;
+        buildCounterSuffix();
     }
 
     /**
      * remove the max character count limit by setting it to 0
      */
     public void removeMaxCharacters() {
+
         this.maxCharacters = 0;
+        buildCounterSuffix();
     }
 
     public void setMinCharacters(int minCharacters) {
+
         this.minCharacters = minCharacters;
+        buildCounterSuffix();
     }
 
     /**
      * remove the min character count limit by setting it to 0
      */
     public void removeMinCharacters() {
+
         this.minCharacters = 0;
+        buildCounterSuffix();
+    }
+
+    /**
+     * format the text with a mask while typing, e.g. InputMask.CARD_NUMBER.
+     * the current text is formatted right away, see getUnmaskedText() for the value without separators.
+     * with the max characters hard limit on, the formatted text is limited, separators included,
+     * counted the same way as the counter. the other InputFilters of the EditText apply
+     * to the formatted text too, e.g. a LengthFilter has to leave room for the separators.
+     * the text of a previous mask is replaced by its unmasked text first
+     *
+     * @param inputMask the mask, null to stop formatting and put the unmasked text back
+     */
+    public void setInputMask(InputMask inputMask) {
+
+        if (this.inputMaskEngine != null) {
+            String unmasked = this.inputMaskEngine.getUnmaskedText();
+            this.inputMaskEngine = null;
+            Editable editable = this.editText.getText();
+            editable.replace(0, editable.length(), unmasked);
+        }
+        if (inputMask == null) return;
+        this.inputMaskEngine = new InputMaskEngine(inputMask, this);
+        this.inputMaskEngine.attach(this.editText.getText());
+    }
+
+    /**
+     * set whether maxCharacters is enforced: inserts and pastes are truncated by an InputFilter
+     * on the EditText so that the text never goes over it, counted the same way as the counter.
+     * text being composed by the IME is only truncated once committed.
+     * with an InputMask set, the mask drops the typed characters instead, separators included in the count
+     *
+     * @param hardLimit true to truncate, false to only show the counter error
+     */
+    public void setMaxCharactersHardLimit(boolean hardLimit) {
+
+        this.maxCharactersHardLimit = hardLimit;
+        InputFilter[] filters = this.editText.getFilters();
+        int index = -1;
+        for (int i = 0; i < filters.length; i++)
+            if (filters[i] == this.maxCharactersFilter) index = i;
+
+        if (hardLimit && index == -1) {
+            if (this.maxCharactersFilter == null) this.maxCharactersFilter = new MaxCharactersFilter(this);
+            InputFilter[] newFilters = Arrays.copyOf(filters, filters.length + 1);
+            newFilters[filters.length] = this.maxCharactersFilter;
+            this.editText.setFilters(newFilters);
+        } else if (!hardLimit && index != -1) {
+            InputFilter[] newFilters = new InputFilter[filters.length - 1];
+            System.arraycopy(filters, 0, newFilters, 0, index);
+            System.arraycopy(filters, index + 1, newFilters, index, filters.length - index - 1);
+            this.editText.setFilters(newFilters);
+        }
+    }
+
+    /**
+     * set how the counter counts the text, checked against the max and min characters.
+     * CharacterCountPolicy.DEFAULT by default, not counting spaces and line feeds
+     *
+     * @param policy one of the CharacterCountPolicy constants or your own
+     */
+    public void setCharacterCountPolicy(CharacterCountPolicy policy) {
+
+        this.characterCountPolicy = policy == null ? CharacterCountPolicy.DEFAULT : policy;
+        this.characterCountValid = false;
+        this.counterLabelCount = -1;
+        updateCounterText();
     }
 
     /* Other Setters */
@@ -785,13 +1825,13 @@ public class TextFieldBoxes extends FrameLayout {
             this.editText.setEnabled(true);
             this.editText.setFocusableInTouchMode(true);
             this.editText.setFocusable(true);
-            this.helperLabel.setVisibility(View.VISIBLE);
-            this.counterLabel.setVisibility(View.VISIBLE);
-            this.bottomLine.setVisibility(View.VISIBLE);
-            this.panel.setEnabled(true);
-            this.iconImageButton.setEnabled(true);
-            this.iconImageButton.setClickable(true);
-            setHighlightColor(DEFAULT_TEXT_COLOR);
+            setBottomVisible(true);
+            setPanelEnabled(true);
+            if (this.iconImageButton != null) {
+                this.iconImageButton.setEnabled(true);
+                this.iconImageButton.setClickable(true);
+            }
+            updateVisualState();
             updateCounterText();
 
         } else {
@@ -800,16 +1840,36 @@ public class TextFieldBoxes extends FrameLayout {
             this.editText.setEnabled(false);
             this.editText.setFocusableInTouchMode(false);
             this.editText.setFocusable(false);
-            this.iconImageButton.setClickable(false);
-            this.iconImageButton.setEnabled(false);
-            this.helperLabel.setVisibility(View.INVISIBLE);
-            this.counterLabel.setVisibility(View.INVISIBLE);
-            this.bottomLine.setVisibility(View.INVISIBLE);
-            this.panel.setEnabled(false);
-            setHighlightColor(DEFAULT_DISABLED_TEXT_COLOR);
+            if (this.iconImageButton != null) {
+                this.iconImageButton.setClickable(false);
+                this.iconImageButton.setEnabled(false);
+            }
+            setBottomVisible(false);
+            setPanelEnabled(false);
+            updateVisualState();
+        }
+    }
+
+    /**
+     * show or hide the helper label, the counter label and the bottom line
+     */
+    protected void setBottomVisible(boolean visible) {
+
+        if (this.flatRenderer != null) this.flatRenderer.setBottomVisible(visible);
+        else {
+            int visibility = visible ? View.VISIBLE : View.INVISIBLE;
+            if (this.helperLabel != null) this.helperLabel.setVisibility(visibility);
+            if (this.counterLabel != null) this.counterLabel.setVisibility(visibility);
+            this.bottomLine.setVisibility(visibility);
         }
     }
 
+    protected void setPanelEnabled(boolean enabled) {
+
+        if (this.flatRenderer != null) this.flatRenderer.setPanelEnabled(enabled);
+        else this.panel.setEnabled(enabled);
+    }
+
     /**
      * set if the EditText is single-lined, that scrolls horizontally
      *
@@ -846,7 +1906,7 @@ public class TextFieldBoxes extends FrameLayout {
 
         this.iconSignifierResourceId = resourceID;
         if (this.iconSignifierResourceId != 0) {
-            this.iconImageButton.setImageResource(this.iconSignifierResourceId);
+            obtainIconImageButton().setImageResource(this.iconSignifierResourceId);
             this.iconImageButton.setVisibility(View.VISIBLE);
         } else removeIconSignifier();
     }
@@ -857,14 +1917,14 @@ public class TextFieldBoxes extends FrameLayout {
     public void removeIconSignifier() {
 
         this.iconSignifierResourceId = 0;
-        this.iconImageButton.setVisibility(View.GONE);
+        if (this.iconImageButton != null) this.iconImageButton.setVisibility(View.GONE);
     }
 
     public void setEndIcon(int resourceID) {
 
         this.endIconResourceId = resourceID;
         if (this.endIconResourceId != 0) {
-            this.endIconImageButton.setImageResource(this.endIconResourceId);
+            obtainEndIconImageButton().setImageResource(this.endIconResourceId);
             this.endIconImageButton.setVisibility(View.VISIBLE);
         } else removeEndIcon();
     }
@@ -875,7 +1935,7 @@ public class TextFieldBoxes extends FrameLayout {
     public void removeEndIcon() {
 
         this.endIconResourceId = 0;
-        this.endIconImageButton.setVisibility(View.GONE);
+        if (this.endIconImageButton != null) this.endIconImageButton.setVisibility(View.GONE);
     }
 
     public void setHasClearButton(boolean hasClearButton) {
@@ -898,7 +1958,7 @@ public class TextFieldBoxes extends FrameLayout {
             /* make the cursor blink */
             int cursorPos = this.editText.getSelectionStart();
             if (cursorPos == 0)
-                if (getText().equals("")) {
+                if (this.editText.length() == 0) {
                     setText(" ");
                     setText("");
                 } else {
@@ -911,15 +1971,27 @@ public class TextFieldBoxes extends FrameLayout {
             }
 
             /* if there's an error, keep the error color */
-            if (!this.onError && this.enabled) setHighlightColor(this.primaryColor);
+            updateVisualState();
 
         } else {
             deactivate();
             /* if there's an error, keep the error color */
-            if (!this.onError && this.enabled) setHighlightColor(DEFAULT_TEXT_COLOR);
+            updateVisualState();
         }
     }
 
+    /**
+     * set whether the label jumps between its lowered and raised positions without animating,
+     * e.g. while a list holding the field is being flung. a running transition is finished at once.
+     *
+     * @param instantLabelTransition true to skip the label animation
+     */
+    public void setInstantLabelTransition(boolean instantLabelTransition) {
+
+        this.instantLabelTransition = instantLabelTransition;
+        if (this.instantLabelTransition && this.labelAnimator != null) this.labelAnimator.finish();
+    }
+
     /**
      * set whether the icon will change its color when gaining or losing focus
      * as the label and the bottomLine do.
@@ -931,6 +2003,7 @@ public class TextFieldBoxes extends FrameLayout {
     public void setIsResponsiveIconColor(boolean isrResponsiveIconColor) {
 
         this.isResponsiveIconColor = isrResponsiveIconColor;
+        if (this.iconImageButton == null) return;
         if (this.isResponsiveIconColor) {
             if (this.hasFocus) {
                 this.iconImageButton.setColorFilter(primaryColor);
@@ -946,8 +2019,34 @@ public class TextFieldBoxes extends FrameLayout {
     }
 
     /* Text Getters */
+
+    /**
+     * @return a copy of the EditText text, made on each call
+     */
     public String getText() {
-        return this.text;
+
+        if (this.editText == null) return this.text;
+        return this.editText.getText().toString();
+    }
+
+    /**
+     * @return the text without the separators of the InputMask, kept up to date while typing.
+     * the same as getText() if there is no mask
+     */
+    public String getUnmaskedText() {
+
+        if (this.inputMaskEngine == null) return getText();
+        return this.inputMaskEngine.getUnmaskedText();
+    }
+
+    /**
+     * @return the live Editable of the EditText without copying,
+     * it keeps changing as the user types
+     */
+    public CharSequence getTextAsCharSequence() {
+
+        if (this.editText == null) return this.text;
+        return this.editText.getText();
     }
 
     public String getLabelText() {
@@ -959,6 +2058,9 @@ public class TextFieldBoxes extends FrameLayout {
     }
 
     public String getCounterText() {
+
+        if (this.flatRenderer != null) return this.flatRenderer.getCounterText();
+        if (this.counterLabel == null) return "";
         return this.counterLabel.getText().toString();
     }
 
@@ -1008,11 +2110,35 @@ public class TextFieldBoxes extends FrameLayout {
         return this.minCharacters;
     }
 
+    public InputMask getInputMask() {
+        return this.inputMaskEngine == null ? null : this.inputMaskEngine.mask;
+    }
+
+    public boolean getMaxCharactersHardLimit() {
+        return this.maxCharactersHardLimit;
+    }
+
+    public CharacterCountPolicy getCharacterCountPolicy() {
+        return this.characterCountPolicy;
+    }
+
     /* View Getters */
+
+    /**
+     * <i>NOTE: THE PANEL, BOTTOM LINE, HELPER, COUNTER AND FLOATING LABELS ARE DRAWN DIRECTLY
+     * AND THEIR GETTERS RETURN NULL WHEN flatRendering IS ON</i>
+     *
+     * @return the panel, null when flatRendering is on
+     */
+    @Nullable
     public View getPanel() {
         return this.panel;
     }
 
+    /**
+     * @return the bottom line, null when flatRendering is on
+     */
+    @Nullable
     public View getBottomLine() {
         return this.bottomLine;
     }
@@ -1021,24 +2147,36 @@ public class TextFieldBoxes extends FrameLayout {
         return this.editText;
     }
 
+    /**
+     * @return the helper label, null when flatRendering is on
+     */
+    @Nullable
     public AppCompatTextView getHelperLabel() {
-        return this.helperLabel;
+        return obtainHelperLabel();
     }
 
+    /**
+     * @return the counter label, null when flatRendering is on
+     */
+    @Nullable
     public AppCompatTextView getCounterLabel() {
-        return this.counterLabel;
+        return obtainCounterLabel();
     }
 
+    /**
+     * @return the floating label, null when flatRendering is on
+     */
+    @Nullable
     public AppCompatTextView getFloatingLabel() {
         return this.floatingLabel;
     }
 
     public AppCompatImageButton getIconImageButton() {
-        return this.iconImageButton;
+        return obtainIconImageButton();
     }
 
     public AppCompatImageButton getEndIconImageButton() {
-        return this.endIconImageButton;
+        return obtainEndIconImageButton();
     }
 
     /* Other Getters */
@@ -1077,4 +2215,12 @@ public class TextFieldBoxes extends FrameLayout {
     public boolean getIsResponsiveIconColor() {
         return this.isResponsiveIconColor;
     }
+
+    public boolean getInstantLabelTransition() {
+        return this.instantLabelTransition;
+    }
+
+    public boolean isFlatRendering() {
+        return this.flatRendering;
+    }
 }
@@ -0,0 +1,178 @@
+package studio.carbonylgroup.textfieldboxes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Text Field Boxes
+ * Manages many TextFieldBoxes as one form. Every registered field reports its error state
+ * and its text changes here, so isValid(), firstInvalid() and values() are answered from an
+ * incrementally maintained bitset and value cache instead of walking over every field.
+ * A field is invalid while it is enabled and setError() or its counter limits put it on error,
+ * disabled fields are skipped.
+ * Everything runs on the main thread.
+ */
+public class TextFieldBoxesForm {
+
+    protected final List<TextFieldBoxes> fields = new ArrayList<>();
+
+    /**
+     * bit i is set while field i is on error
+     */
+    protected final BitSet invalid = new BitSet();
+
+    /**
+     * bit i is set when the cached value of field i is out of date
+     */
+    protected final BitSet staleValues = new BitSet();
+    protected String[] values = new String[0];
+
+    /**
+     * register a field, a field can only belong to one form at a time
+     */
+    public void add(TextFieldBoxes field) {
+
+        if (field.form != null)
+            throw new IllegalArgumentException("the field already belongs to a TextFieldBoxesForm");
+
+        int index = this.fields.size();
+        this.fields.add(field);
+        field.form = this;
+        field.formIndex = index;
+        if (this.values.length <= index)
+            this.values = Arrays.copyOf(this.values, Math.max(8, index * 2));
+        this.staleValues.set(index);
+        this.invalid.set(index, field.isInvalidInForm());
+    }
+
+    public void addAll(TextFieldBoxes... fields) {
+        for (TextFieldBoxes field : fields) add(field);
+    }
+
+    /**
+     * unregister a field, the fields after it move up by one
+     */
+    public void remove(TextFieldBoxes field) {
+
+        if (field.form != this) return;
+        int index = field.formIndex;
+        this.fields.remove(index);
+        field.form = null;
+        field.formIndex = -1;
+
+        /* shift the bits and values of the following fields down */
+        int size = this.fields.size();
+        for (int i = index; i < size; i++) {
+            this.fields.get(i).formIndex = i;
+            this.invalid.set(i, this.invalid.get(i + 1));
+            this.staleValues.set(i, this.staleValues.get(i + 1));
+            this.values[i] = this.values[i + 1];
+        }
+        this.invalid.clear(size);
+        this.staleValues.clear(size);
+        this.values[size] = null;
+    }
+
+    public int size() {
+        return this.fields.size();
+    }
+
+    public TextFieldBoxes get(int index) {
+        return this.fields.get(index);
+    }
+
+    public List<TextFieldBoxes> getFields() {
+        return Collections.unmodifiableList(this.fields);
+    }
+
+    /**
+     * @return true if none of the fields is on error
+     */
+    public boolean isValid() {
+        return this.invalid.isEmpty();
+    }
+
+    public int getInvalidCount() {
+        return this.invalid.cardinality();
+    }
+
+    /**
+     * @return the first field on error in registration order, null if the form is valid
+     */
+    public TextFieldBoxes firstInvalid() {
+
+        int index = this.invalid.nextSetBit(0);
+        return index < 0 ? null : this.fields.get(index);
+    }
+
+    /**
+     * @return the text of every field in registration order,
+     * only the fields changed since the last call are read again
+     */
+    public List<String> values() {
+
+        int size = this.fields.size();
+        for (int i = this.staleValues.nextSetBit(0); i >= 0 && i < size; i = this.staleValues.nextSetBit(i + 1))
+            this.values[i] = this.fields.get(i).getText();
+        this.staleValues.clear();
+        return Collections.unmodifiableList(Arrays.asList(this.values).subList(0, size));
+    }
+
+    /**
+     * @return the text of the field at the index, read again only if it changed
+     */
+    public String getValue(int index) {
+
+        if (index < 0 || index >= this.fields.size()) throw new IndexOutOfBoundsException();
+        if (this.staleValues.get(index)) {
+            this.values[index] = this.fields.get(index).getText();
+            this.staleValues.clear(index);
+        }
+        return this.values[index];
+    }
+
+    /**
+     * enable or disable all the fields, each one in a single batch update
+     */
+    public void setEnabled(boolean enabled) {
+
+        for (int i = 0, size = this.fields.size(); i < size; i++) {
+            TextFieldBoxes field = this.fields.get(i);
+            field.beginUpdate();
+            field.setEnabled(enabled);
+            field.endUpdate();
+        }
+    }
+
+    /**
+     * empty all the fields and lower the labels of the ones without focus,
+     * each one in a single batch update
+     */
+    public void clear() {
+
+        for (int i = 0, size = this.fields.size(); i < size; i++) {
+            TextFieldBoxes field = this.fields.get(i);
+            field.beginUpdate();
+            field.setText("");
+            if (!field.getEditText().hasFocus()) field.deactivate();
+            field.endUpdate();
+        }
+    }
+
+    /**
+     * called by a registered field whenever its error state may have changed
+     */
+    protected void onFieldErrorChanged(int index, boolean onError) {
+        this.invalid.set(index, onError);
+    }
+
+    /**
+     * called by a registered field when its text changed
+     */
+    protected void onFieldTextChanged(int index) {
+        this.staleValues.set(index);
+    }
+}
@@ -0,0 +1,130 @@
+package studio.carbonylgroup.textfieldboxes;
+
+import android.support.v4.os.TraceCompat;
+import android.view.View;
+
+/**
+ * Text Field Boxes
+ * Opt-in instrumentation of the hot paths of TextFieldBoxes, ExtendedEditText and ClipToBoundsView.
+ * Every instrumented call is timed and reported to the Sink, and can be wrapped in a
+ * systrace section. Both are off by default: the instrumented code then only reads one static flag.
+ * Everything is reported from the main thread.
+ */
+public final class TextFieldBoxesMetrics {
+
+    /* Events */
+    public static final int INFLATE = 0;
+    public static final int MEASURE = 1;
+    public static final int COUNTER_UPDATE = 2;
+    public static final int HIGHLIGHT_COLOR = 3;
+    public static final int CURSOR_TINT = 4;
+    public static final int ACTIVATE = 5;
+    public static final int DEACTIVATE = 6;
+    public static final int LABEL_FRAME = 7;
+    public static final int DECORATION_MEASURE = 8;
+    public static final int DECORATION_DRAW = 9;
+    public static final int CLIP_DRAW = 10;
+    public static final int EVENT_COUNT = 11;
+
+    private static final String[] EVENT_NAMES = {
+            "inflate", "measure", "counterUpdate", "highlightColor", "cursorTint",
+            "activate", "deactivate", "labelFrame", "decorationMeasure", "decorationDraw", "clipDraw"};
+
+    private static final String[] TRACE_SECTIONS = new String[EVENT_COUNT];
+
+    static {
+        for (int i = 0; i < EVENT_COUNT; i++) TRACE_SECTIONS[i] = "TextFieldBoxes:" + EVENT_NAMES[i];
+    }
+
+    public interface Sink {
+
+        /**
+         * @param view          the view the event happened in
+         * @param event         one of the event constants
+         * @param durationNanos how long the call took
+         */
+        void onEvent(View view, int event, long durationNanos);
+    }
+
+    public static final Sink NO_OP_SINK = new Sink() {
+        @Override
+        public void onEvent(View view, int event, long durationNanos) {
+        }
+    };
+
+    private static volatile Sink sink = NO_OP_SINK;
+    private static volatile boolean traceEnabled = false;
+
+    /**
+     * read by every instrumented call, true if there is a sink or tracing is on.
+     * volatile as the setters may be called from another thread than the instrumented calls
+     */
+    static volatile boolean active = false;
+
+    /**
+     * the lowest bit of the token returned by begin(), set if a trace section was opened
+     */
+    private static final long TRACED = 1L;
+
+    private TextFieldBoxesMetrics() {
+    }
+
+    /**
+     * @param sink where to report the events, null or NO_OP_SINK to stop reporting
+     */
+    public static void setSink(Sink sink) {
+
+        TextFieldBoxesMetrics.sink = sink == null ? NO_OP_SINK : sink;
+        updateActive();
+    }
+
+    public static Sink getSink() {
+        return sink;
+    }
+
+    /**
+     * @param traceEnabled whether to wrap the instrumented calls in android.os.Trace sections
+     */
+    public static void setTraceEnabled(boolean traceEnabled) {
+
+        TextFieldBoxesMetrics.traceEnabled = traceEnabled;
+        updateActive();
+    }
+
+    public static boolean isTraceEnabled() {
+        return traceEnabled;
+    }
+
+    public static String getEventName(int event) {
+        return EVENT_NAMES[event];
+    }
+
+    private static void updateActive() {
+        active = sink != NO_OP_SINK || traceEnabled;
+    }
+
+    /**
+     * @return the token to pass to end(): the start time with the TRACED bit telling whether
+     * a trace section was opened, 0 if nothing is recorded
+     */
+    static long begin(int event) {
+
+        if (!active) return 0;
+        boolean traced = traceEnabled;
+        if (traced) TraceCompat.beginSection(TRACE_SECTIONS[event]);
+        long start = System.nanoTime();
+        start = traced ? start | TRACED : start & ~TRACED;
+        return start == 0 ? 2 : start;
+    }
+
+    /**
+     * close what the matching begin() opened, even if the tracing was switched in between
+     */
+    static void end(View view, int event, long start) {
+
+        if (start == 0) return;
+        long duration = System.nanoTime() - (start & ~TRACED);
+        if ((start & TRACED) != 0) TraceCompat.endSection();
+        sink.onEvent(view, event, duration);
+    }
+}
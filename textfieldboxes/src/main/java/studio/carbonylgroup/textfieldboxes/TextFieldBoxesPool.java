@@ -0,0 +1,247 @@
+package studio.carbonylgroup.textfieldboxes;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.res.Configuration;
+import android.os.Bundle;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.view.AsyncLayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Text Field Boxes
+ * An opt-in pool of text_field_boxes_layout.xml subtrees inflated off the main thread.
+ * prefetch() queues the inflations and starts them once the main thread is idle, one at a time
+ * on the AsyncLayoutInflater thread. A TextFieldBoxes inflated later with the same Context adopts
+ * a pooled subtree instead of inflating its own. The pool is emptied, and lets go of the Context,
+ * when the system asks the app to trim its memory, when another Context is prefetched for
+ * and when the Activity of the Context is destroyed.
+ * Everything but the inflation itself runs on the main thread.
+ */
+public final class TextFieldBoxesPool implements ComponentCallbacks2, Application.ActivityLifecycleCallbacks {
+
+    private static TextFieldBoxesPool instance;
+
+    public static TextFieldBoxesPool getInstance() {
+
+        if (instance == null) instance = new TextFieldBoxesPool();
+        return instance;
+    }
+
+    protected final List<View> pooled = new ArrayList<>();
+    protected int maxSize = 8;
+    protected int requested = 0;
+    protected boolean inflating = false;
+    protected boolean callbacksRegistered = false;
+
+    /**
+     * bumped by clear(), the inflations started before are dropped when they finish
+     */
+    protected int generation = 0;
+
+    protected Context context;
+
+    /**
+     * the Activity the Context belongs to, null if it's not an Activity Context
+     */
+    protected Activity activity;
+    protected ViewGroup parent;
+    protected AsyncLayoutInflater inflater;
+
+    private final MessageQueue.IdleHandler idleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            inflateNext();
+            return false;
+        }
+    };
+
+    /**
+     * one per inflation, to tell the inflations started before the last clear() apart
+     */
+    private class InflateRequest implements AsyncLayoutInflater.OnInflateFinishedListener {
+
+        private final int generation;
+
+        private InflateRequest(int generation) {
+            this.generation = generation;
+        }
+
+        @Override
+        public void onInflateFinished(@NonNull View view, int resid, @Nullable ViewGroup parent) {
+
+            /* a stale inflation, clear() already reset the state it belonged to */
+            if (this.generation != TextFieldBoxesPool.this.generation) return;
+            inflating = false;
+            if (pooled.size() < maxSize) pooled.add(view);
+            scheduleNext();
+        }
+    }
+
+    private TextFieldBoxesPool() {
+    }
+
+    /**
+     * @param maxSize the most subtrees kept at once, the extra ones are dropped
+     */
+    public void setMaxSize(int maxSize) {
+
+        this.maxSize = Math.max(0, maxSize);
+        while (this.pooled.size() > this.maxSize) this.pooled.remove(this.pooled.size() - 1);
+        this.requested = Math.min(this.requested, this.maxSize - this.pooled.size());
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * @return the number of subtrees ready to be adopted
+     */
+    public int size() {
+        return this.pooled.size();
+    }
+
+    /**
+     * pre-inflate subtrees for the TextFieldBoxes that will be inflated with this Context,
+     * e.g. an Activity about to show a large form in a fragment or a dialog.
+     * prefetching for another Context drops what was pooled for the previous one.
+     * the pool is cleared when the Activity of the Context is destroyed, call clear()
+     * yourself once the screen is gone if the Context doesn't belong to an Activity.
+     *
+     * @param context the Context the fields will be inflated with
+     * @param count   how many subtrees to have ready, capped by the max size
+     */
+    public void prefetch(Context context, int count) {
+
+        if (this.context != context) {
+            clear();
+            this.context = context;
+            this.activity = findActivity(context);
+            this.parent = new FrameLayout(context);
+            this.inflater = new AsyncLayoutInflater(context);
+        }
+        if (!this.callbacksRegistered) {
+            Context applicationContext = context.getApplicationContext();
+            applicationContext.registerComponentCallbacks(this);
+            if (applicationContext instanceof Application)
+                ((Application) applicationContext).registerActivityLifecycleCallbacks(this);
+            this.callbacksRegistered = true;
+        }
+        this.requested = Math.max(this.requested,
+                Math.min(count, this.maxSize) - this.pooled.size() - (this.inflating ? 1 : 0));
+        scheduleNext();
+    }
+
+    /**
+     * drop all the pooled subtrees and the pending requests and let go of the Context.
+     * an inflation still running is dropped once it finishes
+     */
+    public void clear() {
+
+        this.generation++;
+        this.pooled.clear();
+        this.requested = 0;
+        this.inflating = false;
+        this.context = null;
+        this.activity = null;
+        this.parent = null;
+        this.inflater = null;
+        Looper.myQueue().removeIdleHandler(this.idleHandler);
+    }
+
+    protected static Activity findActivity(Context context) {
+
+        while (context instanceof ContextWrapper) {
+            if (context instanceof Activity) return (Activity) context;
+            context = ((ContextWrapper) context).getBaseContext();
+        }
+        return null;
+    }
+
+    /**
+     * @return a pooled subtree inflated with this Context, null if there is none
+     * or if the pool was never used
+     */
+    static View acquire(Context context) {
+
+        TextFieldBoxesPool pool = instance;
+        if (pool == null || context != pool.context || pool.pooled.isEmpty()) return null;
+        return pool.pooled.remove(pool.pooled.size() - 1);
+    }
+
+    /**
+     * start the next inflation once the main thread is idle, if one is still requested
+     */
+    protected void scheduleNext() {
+
+        if (this.inflating || this.requested <= 0 || this.inflater == null) return;
+        MessageQueue queue = Looper.myQueue();
+        queue.removeIdleHandler(this.idleHandler);
+        queue.addIdleHandler(this.idleHandler);
+    }
+
+    protected void inflateNext() {
+
+        if (this.inflating || this.requested <= 0 || this.inflater == null) return;
+        this.requested--;
+        this.inflating = true;
+        this.inflater.inflate(R.layout.text_field_boxes_layout, this.parent, new InflateRequest(this.generation));
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_RUNNING_LOW) clear();
+    }
+
+    @Override
+    public void onLowMemory() {
+        clear();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration configuration) {
+        /* the pooled subtrees were inflated for the old configuration */
+        clear();
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity activity) {
+        if (activity == this.activity) clear();
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityStarted(Activity activity) {
+    }
+
+    @Override
+    public void onActivityResumed(Activity activity) {
+    }
+
+    @Override
+    public void onActivityPaused(Activity activity) {
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
+}
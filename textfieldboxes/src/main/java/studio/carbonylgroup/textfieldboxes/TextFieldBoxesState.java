@@ -0,0 +1,155 @@
+package studio.carbonylgroup.textfieldboxes;
+
+/**
+ * Text Field Boxes
+ * An immutable snapshot of what a TextFieldBoxes shows, applied with TextFieldBoxes.bind()
+ * and captured with TextFieldBoxes.unbind(), e.g. to hold the state of a recycled list row.
+ * Colors are not part of it, they usually don't change from one row to the next.
+ */
+public final class TextFieldBoxesState {
+
+    public final String text;
+    public final String labelText;
+    public final String helperText;
+    public final String hint;
+    public final String prefix;
+    public final String suffix;
+
+    /**
+     * the error message shown in place of the helper text, null if the field is not on error
+     */
+    public final String errorText;
+    public final int maxCharacters;
+    public final int minCharacters;
+    public final boolean enabled;
+    public final int iconSignifierResourceId;
+    public final int endIconResourceId;
+    public final boolean hasClearButton;
+
+    protected TextFieldBoxesState(Builder builder) {
+
+        this.text = builder.text;
+        this.labelText = builder.labelText;
+        this.helperText = builder.helperText;
+        this.hint = builder.hint;
+        this.prefix = builder.prefix;
+        this.suffix = builder.suffix;
+        this.errorText = builder.errorText;
+        this.maxCharacters = builder.maxCharacters;
+        this.minCharacters = builder.minCharacters;
+        this.enabled = builder.enabled;
+        this.iconSignifierResourceId = builder.iconSignifierResourceId;
+        this.endIconResourceId = builder.endIconResourceId;
+        this.hasClearButton = builder.hasClearButton;
+    }
+
+    /**
+     * @return a Builder holding the values of this state, to derive a modified copy
+     */
+    public Builder buildUpon() {
+
+        return new Builder()
+                .setText(this.text)
+                .setLabelText(this.labelText)
+                .setHelperText(this.helperText)
+                .setHint(this.hint)
+                .setPrefix(this.prefix)
+                .setSuffix(this.suffix)
+                .setErrorText(this.errorText)
+                .setMaxCharacters(this.maxCharacters)
+                .setMinCharacters(this.minCharacters)
+                .setEnabled(this.enabled)
+                .setIconSignifier(this.iconSignifierResourceId)
+                .setEndIcon(this.endIconResourceId)
+                .setHasClearButton(this.hasClearButton);
+    }
+
+    public static class Builder {
+
+        protected String text = "";
+        protected String labelText = "";
+        protected String helperText = "";
+        protected String hint = "";
+        protected String prefix = "";
+        protected String suffix = "";
+        protected String errorText = null;
+        protected int maxCharacters = 0;
+        protected int minCharacters = 0;
+        protected boolean enabled = true;
+        protected int iconSignifierResourceId = 0;
+        protected int endIconResourceId = 0;
+        protected boolean hasClearButton = false;
+
+        public Builder setText(String text) {
+            this.text = text == null ? "" : text;
+            return this;
+        }
+
+        public Builder setLabelText(String labelText) {
+            this.labelText = labelText;
+            return this;
+        }
+
+        public Builder setHelperText(String helperText) {
+            this.helperText = helperText;
+            return this;
+        }
+
+        public Builder setHint(String hint) {
+            this.hint = hint;
+            return this;
+        }
+
+        public Builder setPrefix(String prefix) {
+            this.prefix = prefix;
+            return this;
+        }
+
+        public Builder setSuffix(String suffix) {
+            this.suffix = suffix;
+            return this;
+        }
+
+        /**
+         * @param errorText the error message, null for no error
+         */
+        public Builder setErrorText(String errorText) {
+            this.errorText = errorText;
+            return this;
+        }
+
+        public Builder setMaxCharacters(int maxCharacters) {
+            this.maxCharacters = maxCharacters;
+            return this;
+        }
+
+        public Builder setMinCharacters(int minCharacters) {
+            this.minCharacters = minCharacters;
+            return this;
+        }
+
+        public Builder setEnabled(boolean enabled) {
+            this.enabled = enabled;
+            return this;
+        }
+
+        public Builder setIconSignifier(int resourceID) {
+            this.iconSignifierResourceId = resourceID;
+            return this;
+        }
+
+        public Builder setEndIcon(int resourceID) {
+            this.endIconResourceId = resourceID;
+            return this;
+        }
+
+        public Builder setHasClearButton(boolean hasClearButton) {
+            this.hasClearButton = hasClearButton;
+            return this;
+        }
+
+        public TextFieldBoxesState build() {
+            return new TextFieldBoxesState(this);
+        }
+    }
+}
@@ -6,11 +6,14 @@ import android.content.res.TypedArray;
 import android.graphics.Color;
 import android.graphics.PorterDuff;
 import android.graphics.drawable.Drawable;
+import android.support.v4.content.ContextCompat;
+import android.util.SparseArray;
 import android.util.TypedValue;
 import android.widget.EditText;
 import android.widget.TextView;
 
 import java.lang.reflect.Field;
+import java.util.WeakHashMap;
 
 /**
  * Text Field Boxes
@@ -31,27 +34,102 @@ public class Utils {
     }
 
     /**
-     * set EditText cursor color
+     * reflection handles used by setCursorDrawableColor, resolved once per process
+     */
+    private static Field fCursorDrawableRes;
+    private static Field fEditor;
+    private static Field fCursorDrawable;
+    private static boolean cursorFieldsResolved = false;
+    private static boolean cursorFieldsFailed = false;
+
+    /**
+     * the constant states of the cursor drawables loaded for a theme, keyed by resource ID.
+     * each EditText gets its own drawables from them, as the Editor positions them,
+     * and the tint is applied to those new drawables only. dropped if the density changed.
+     */
+    private static final WeakHashMap<Resources.Theme, CursorStates> cursorStatesCache = new WeakHashMap<>();
+
+    private static class CursorStates {
+
+        final int densityDpi;
+        final SparseArray<Drawable.ConstantState> states = new SparseArray<>();
+
+        CursorStates(int densityDpi) {
+            this.densityDpi = densityDpi;
+        }
+    }
+
+    private static void resolveCursorFields(Object editor) throws NoSuchFieldException {
+
+        if (cursorFieldsResolved) return;
+        fCursorDrawable = editor.getClass().getDeclaredField("mCursorDrawable");
+        fCursorDrawable.setAccessible(true);
+        cursorFieldsResolved = true;
+    }
+
+    /**
+     * @return the constant state of the cursor drawable for the theme and density of the context
+     */
+    private static Drawable.ConstantState obtainCursorState(Context context, int cursorDrawableRes) {
+
+        Resources.Theme theme = context.getTheme();
+        int densityDpi = context.getResources().getDisplayMetrics().densityDpi;
+        synchronized (cursorStatesCache) {
+            CursorStates cursorStates = cursorStatesCache.get(theme);
+            if (cursorStates == null || cursorStates.densityDpi != densityDpi) {
+                cursorStates = new CursorStates(densityDpi);
+                cursorStatesCache.put(theme, cursorStates);
+            }
+            Drawable.ConstantState state = cursorStates.states.get(cursorDrawableRes);
+            if (state == null) {
+                Drawable drawable = ContextCompat.getDrawable(context, cursorDrawableRes);
+                if (drawable == null || (state = drawable.getConstantState()) == null) return null;
+                cursorStates.states.put(cursorDrawableRes, state);
+            }
+            return state;
+        }
+    }
+
+    /**
+     * set EditText cursor color.
+     * only the inflation of the cursor drawable is cached: each call still creates the two drawables
+     * of the EditText from the cached constant state and tints them.
+     * stops trying for the whole process only if the reflection itself fails
      */
     public static void setCursorDrawableColor(EditText _editText, int _colorRes) {
 
+        if (cursorFieldsFailed) return;
+        long metricsStart = TextFieldBoxesMetrics.begin(TextFieldBoxesMetrics.CURSOR_TINT);
         try {
-            Field fCursorDrawableRes = TextView.class.getDeclaredField("mCursorDrawableRes");
-            fCursorDrawableRes.setAccessible(true);
+            if (fEditor == null) {
+                fCursorDrawableRes = TextView.class.getDeclaredField("mCursorDrawableRes");
+                fCursorDrawableRes.setAccessible(true);
+                fEditor = TextView.class.getDeclaredField("mEditor");
+                fEditor.setAccessible(true);
+            }
             int mCursorDrawableRes = fCursorDrawableRes.getInt(_editText);
-            Field fEditor = TextView.class.getDeclaredField("mEditor");
-            fEditor.setAccessible(true);
+            if (mCursorDrawableRes == 0) return;
             Object editor = fEditor.get(_editText);
-            Class<?> clazz = editor.getClass();
-            Field fCursorDrawable = clazz.getDeclaredField("mCursorDrawable");
-            fCursorDrawable.setAccessible(true);
+            if (editor == null) return;
+            resolveCursorFields(editor);
+
+            Context context = _editText.getContext();
+            Drawable.ConstantState state = obtainCursorState(context, mCursorDrawableRes);
+            if (state == null) return;
             Drawable[] drawables = new Drawable[2];
-            drawables[0] = _editText.getContext().getResources().getDrawable(mCursorDrawableRes);
-            drawables[1] = _editText.getContext().getResources().getDrawable(mCursorDrawableRes);
+            drawables[0] = state.newDrawable(context.getResources());
+            drawables[1] = state.newDrawable(context.getResources());
             drawables[0].setColorFilter(_colorRes, PorterDuff.Mode.SRC_IN);
             drawables[1].setColorFilter(_colorRes, PorterDuff.Mode.SRC_IN);
             fCursorDrawable.set(editor, drawables);
-        } catch (Throwable ignored) {
+        } catch (NoSuchFieldException e) {
+            cursorFieldsFailed = true;
+        } catch (IllegalAccessException e) {
+            cursorFieldsFailed = true;
+        } catch (RuntimeException ignored) {
+            /* e.g. a missing resource, tinting is tried again next time */
+        } finally {
+            TextFieldBoxesMetrics.end(_editText, TextFieldBoxesMetrics.CURSOR_TINT, metricsStart);
         }
     }
 
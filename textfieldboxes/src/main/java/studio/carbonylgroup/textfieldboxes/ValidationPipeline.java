@@ -0,0 +1,158 @@
+package studio.carbonylgroup.textfieldboxes;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Text Field Boxes
+ * Runs the validators of a TextFieldBoxes on a background executor, debounced after each change.
+ * A run is stale as soon as the text changes again: it stops before the next validator
+ * and its result is dropped, so only results for the current text reach setError()/removeError().
+ */
+class ValidationPipeline {
+
+    private static ExecutorService defaultExecutor;
+
+    /**
+     * one shared daemon thread for all the fields that don't set their own executor
+     */
+    protected static synchronized ExecutorService getDefaultExecutor() {
+
+        if (defaultExecutor == null)
+            defaultExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "TextFieldBoxes-validation");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        return defaultExecutor;
+    }
+
+    protected final TextFieldBoxes host;
+    protected final Handler handler = new Handler(Looper.getMainLooper());
+    protected final List<Validator> validators = new CopyOnWriteArrayList<>();
+    protected ExecutorService executor;
+    protected long debounceMillis = 300;
+
+    /**
+     * bumped on the main thread whenever the text changes, read by the running validation.
+     */
+    protected volatile int generation = 0;
+    protected Future<?> running;
+    protected boolean errorShown = false;
+
+    private final Runnable startRunnable = new Runnable() {
+        @Override
+        public void run() {
+            start();
+        }
+    };
+
+    ValidationPipeline(TextFieldBoxes host) {
+        this.host = host;
+    }
+
+    protected void addValidator(Validator validator) {
+        this.validators.add(validator);
+    }
+
+    protected void removeValidator(Validator validator) {
+
+        this.validators.remove(validator);
+        if (this.validators.isEmpty()) cancel();
+    }
+
+    protected void setDebounceMillis(long debounceMillis) {
+        this.debounceMillis = Math.max(0, debounceMillis);
+    }
+
+    protected void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * the text changed: everything running is stale, schedule a new run after the debounce
+     */
+    protected void onTextChanged() {
+
+        this.generation++;
+        /* the change already removed the error through removeError() */
+        this.errorShown = false;
+        this.handler.removeCallbacks(this.startRunnable);
+        if (this.validators.isEmpty()) return;
+        if (this.debounceMillis == 0) start();
+        else this.handler.postDelayed(this.startRunnable, this.debounceMillis);
+    }
+
+    /**
+     * validate the current text right away, without the debounce
+     */
+    protected void validateNow() {
+
+        this.generation++;
+        this.handler.removeCallbacks(this.startRunnable);
+        start();
+    }
+
+    /**
+     * drop the pending and the running validation
+     */
+    protected void cancel() {
+
+        this.generation++;
+        this.handler.removeCallbacks(this.startRunnable);
+        if (this.running != null) this.running.cancel(true);
+        this.running = null;
+    }
+
+    protected void start() {
+
+        if (this.running != null) this.running.cancel(true);
+        this.running = null;
+        if (this.validators.isEmpty()) return;
+
+        final int runGeneration = this.generation;
+        final String text = this.host.getText();
+        ExecutorService executor = this.executor != null ? this.executor : getDefaultExecutor();
+        this.running = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                String error = null;
+                for (Validator validator : validators) {
+                    if (runGeneration != generation || Thread.currentThread().isInterrupted()) return;
+                    error = validator.validate(text);
+                    if (error != null) break;
+                }
+                final String result = error;
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliver(runGeneration, result);
+                    }
+                });
+            }
+        });
+    }
+
+    protected void deliver(int runGeneration, String error) {
+
+        if (runGeneration != this.generation) return;
+        this.running = null;
+        if (error != null) {
+            this.host.setError(error);
+            this.errorShown = true;
+        } else if (this.errorShown) {
+            this.errorShown = false;
+            this.host.removeError();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package studio.carbonylgroup.textfieldboxes;
+
+/**
+ * Text Field Boxes
+ * Checks the text of a TextFieldBoxes off the main thread, see TextFieldBoxes.addValidator()
+ */
+public interface Validator {
+
+    /**
+     * @param text a snapshot of the text, safe to read on the background thread
+     * @return the error message to show, or null if the text is valid
+     */
+    String validate(String text);
+}
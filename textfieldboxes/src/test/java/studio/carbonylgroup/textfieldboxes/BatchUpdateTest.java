@@ -0,0 +1,84 @@
+package studio.carbonylgroup.textfieldboxes;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Text Field Boxes
+ * Between beginUpdate() and the outermost endUpdate() the counter, the highlight, the layout
+ * and the invalidation are only marked as pending, then applied once.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class BatchUpdateTest {
+
+    private TextFieldBoxes field;
+
+    @Before
+    public void setUp() {
+        this.field = TestFields.create();
+    }
+
+    @Test
+    public void inflationClosesItsBatch() {
+
+        assertFalse(this.field.isInBatchUpdate());
+        assertFalse(this.field.pendingCounterUpdate);
+        assertFalse(this.field.pendingVisualState);
+        assertFalse(this.field.pendingLayout);
+        assertFalse(this.field.pendingInvalidate);
+    }
+
+    @Test
+    public void deferredUntilTheOutermostEndUpdate() {
+
+        this.field.beginUpdate();
+        this.field.beginUpdate();
+        this.field.setMaxCharacters(3);
+        this.field.setText("abcd");
+        this.field.requestLayout();
+        this.field.invalidate();
+        assertTrue(this.field.isInBatchUpdate());
+        assertEquals("", this.field.getCounterText());
+        assertFalse(this.field.counterError);
+        assertTrue(this.field.pendingCounterUpdate);
+        assertTrue(this.field.pendingLayout);
+        assertTrue(this.field.pendingInvalidate);
+
+        this.field.endUpdate();
+        assertTrue(this.field.isInBatchUpdate());
+        assertEquals("", this.field.getCounterText());
+
+        this.field.endUpdate();
+        assertFalse(this.field.isInBatchUpdate());
+        assertEquals("4 / 3", this.field.getCounterText());
+        assertTrue(this.field.counterError);
+        assertFalse(this.field.pendingCounterUpdate);
+        assertFalse(this.field.pendingVisualState);
+        assertFalse(this.field.pendingLayout);
+        assertFalse(this.field.pendingInvalidate);
+        assertTrue(this.field.isLayoutRequested());
+    }
+
+    @Test
+    public void unmatchedEndUpdateIsIgnored() {
+
+        this.field.endUpdate();
+        assertFalse(this.field.isInBatchUpdate());
+
+        this.field.beginUpdate();
+        this.field.endUpdate();
+        this.field.endUpdate();
+        assertFalse(this.field.isInBatchUpdate());
+        this.field.setMaxCharacters(2);
+        this.field.setText("abc");
+        assertEquals("3 / 2", this.field.getCounterText());
+    }
+}
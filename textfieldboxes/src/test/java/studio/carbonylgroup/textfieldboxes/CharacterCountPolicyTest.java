@@ -0,0 +1,171 @@
+package studio.carbonylgroup.textfieldboxes;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Text Field Boxes
+ * Every CharacterCountPolicy, kept up to date from the edited range the way the TextWatcher
+ * of TextFieldBoxes does it, must match a count of the whole text after each edit.
+ * The random edits start and end on code points, as an IME never splits a surrogate pair.
+ */
+public class CharacterCountPolicyTest {
+
+    private static final int EDITS = 5000;
+
+    private static final String FLAG_US = "\uD83C\uDDFA\uD83C\uDDF8";
+    private static final String REGIONAL_INDICATOR_U = "\uD83C\uDDFA";
+
+    /**
+     * letters, spaces, line feeds, combining marks, CJK, emoji with modifiers and joiners, flags
+     */
+    private static final String[] PIECES = {
+            "a", "b", "Z", "7", " ", "\n", "\u00E9", "e\u0301", "\u0301", "\u4E2D", "\u6587",
+            "\uD83D\uDE00", "\uD83D\uDC4D\uD83C\uDFFD", "\uD83C\uDFFD", "\u200D",
+            "\uD83D\uDC68\u200D\uD83D\uDC69\u200D\uD83D\uDC67", REGIONAL_INDICATOR_U, "\uD83C\uDDF8", FLAG_US};
+
+    /**
+     * replays edits on a StringBuilder, keeping the count up to date as beforeTextChanged()
+     * and onTextChanged() do, and checks it against a full count after each one
+     */
+    private static class Replay {
+
+        private final CharacterCountPolicy policy;
+        private final StringBuilder text = new StringBuilder();
+        private int count = 0;
+
+        Replay(CharacterCountPolicy policy) {
+            this.policy = policy;
+        }
+
+        void replace(int start, int end, String replacement) {
+
+            int rangeStart = this.policy.getRangeStart(this.text, start);
+            int rangeEnd = this.policy.getRangeEnd(this.text, end);
+            this.count -= this.policy.count(this.text, rangeStart, rangeEnd);
+            int tail = this.text.length() - rangeEnd;
+
+            this.text.replace(start, end, replacement);
+            this.count += this.policy.count(this.text, rangeStart, this.text.length() - tail);
+
+            assertEquals("after replacing [" + start + ", " + end + ") in " + escape(this.text),
+                    this.policy.count(this.text, 0, this.text.length()), this.count);
+        }
+    }
+
+    private static String escape(CharSequence text) {
+
+        StringBuilder escaped = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x20 && c < 0x7F) escaped.append(c);
+            else escaped.append(String.format("\\u%04X", (int) c));
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * @return the offset moved back off the middle of a surrogate pair
+     */
+    private static int codePointOffset(CharSequence text, int offset) {
+
+        if (offset > 0 && offset < text.length() && Character.isLowSurrogate(text.charAt(offset))
+                && Character.isHighSurrogate(text.charAt(offset - 1))) return offset - 1;
+        return offset;
+    }
+
+    private static void randomEdits(CharacterCountPolicy policy, long seed) {
+        randomEdits(policy, seed, 0, EDITS);
+    }
+
+    /**
+     * @param initialLength the length of random text to start from
+     */
+    private static void randomEdits(CharacterCountPolicy policy, long seed, int initialLength, int edits) {
+
+        Random random = new Random(seed);
+        Replay replay = new Replay(policy);
+        StringBuilder initial = new StringBuilder();
+        while (initial.length() < initialLength) initial.append(PIECES[random.nextInt(PIECES.length)]);
+        replay.replace(0, 0, initial.toString());
+        for (int i = 0; i < edits; i++) {
+            int length = replay.text.length();
+            int start = codePointOffset(replay.text, random.nextInt(length + 1));
+            int end = start;
+            /* delete a range now and then, more often as the text grows */
+            if (length > 0 && random.nextInt(100) < 30 + Math.min(length, 60))
+                end = codePointOffset(replay.text, Math.min(length, start + 1 + random.nextInt(8)));
+            StringBuilder insertion = new StringBuilder();
+            for (int pieces = random.nextInt(4); pieces > 0; pieces--)
+                insertion.append(PIECES[random.nextInt(PIECES.length)]);
+            replay.replace(start, end, insertion.toString());
+        }
+    }
+
+    @Test
+    public void defaultMatchesFullCount() {
+        randomEdits(CharacterCountPolicy.DEFAULT, 1);
+    }
+
+    @Test
+    public void utf16UnitsMatchFullCount() {
+        randomEdits(CharacterCountPolicy.UTF16_UNITS, 2);
+    }
+
+    @Test
+    public void codePointsMatchFullCount() {
+        randomEdits(CharacterCountPolicy.CODE_POINTS, 3);
+    }
+
+    @Test
+    public void utf8BytesMatchFullCount() {
+        randomEdits(CharacterCountPolicy.UTF8_BYTES, 4);
+    }
+
+    @Test
+    public void graphemeClustersMatchFullCount() {
+        randomEdits(CharacterCountPolicy.GRAPHEME_CLUSTERS, 5);
+    }
+
+    @Test
+    public void graphemeClustersMatchFullCountInALargeText() {
+        /* above the threshold, the BreakIterator only reads windows around the edits.
+         * the text shrinks by about one character per edit, it stays above it throughout */
+        randomEdits(CharacterCountPolicy.GRAPHEME_CLUSTERS, 6, 6000, 1500);
+    }
+
+    @Test
+    public void regionalIndicatorInsertedAtTheStartOfARun() {
+
+        CharacterCountPolicy policy = CharacterCountPolicy.GRAPHEME_CLUSTERS;
+        Replay replay = new Replay(policy);
+        StringBuilder run = new StringBuilder();
+        for (int i = 0; i < 9; i++) run.append(REGIONAL_INDICATOR_U);
+        replay.replace(0, 0, run + "a");
+
+        /* ICU pairs the flags from the start of their run, so an edit anywhere in a run
+         * recounts all of it. checked on the range as the JDK before 20 doesn't pair them */
+        assertEquals(18, policy.getRangeEnd(replay.text, 0));
+        assertEquals(0, policy.getRangeStart(replay.text, 10));
+        assertEquals(0, policy.getRangeStart(replay.text, 11));
+        assertEquals(18, policy.getRangeEnd(replay.text, 11));
+
+        replay.replace(0, 0, REGIONAL_INDICATOR_U);
+        replay.replace(0, 2, "");
+        replay.replace(8, 8, "b");
+        replay.replace(8, 9, "");
+    }
+
+    @Test
+    public void codePointsAcrossASplitPair() {
+
+        Replay replay = new Replay(CharacterCountPolicy.CODE_POINTS);
+        replay.replace(0, 0, "a\uD83D\uDE00b");
+        replay.replace(2, 2, "x");
+        replay.replace(2, 3, "");
+        assertEquals(3, replay.count);
+    }
+}
@@ -0,0 +1,95 @@
+package studio.carbonylgroup.textfieldboxes;
+
+import android.text.Editable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Text Field Boxes
+ * The counter keeps a running count from the TextWatcher ranges, the same as counting the whole text.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class CharacterCounterTest {
+
+    private TextFieldBoxes field;
+    private Editable editable;
+
+    @Before
+    public void setUp() {
+
+        this.field = TestFields.create();
+        this.editable = this.field.getEditText().getText();
+    }
+
+    @Test
+    public void countsWhileTyping() {
+
+        this.field.setMaxCharacters(5);
+        this.editable.append("ab c");
+        assertEquals("3 / 5", this.field.getCounterText());
+
+        this.editable.append("\nde");
+        assertEquals("5 / 5", this.field.getCounterText());
+        assertFalse(this.field.counterError);
+
+        this.editable.append("f");
+        assertEquals("6 / 5", this.field.getCounterText());
+        assertTrue(this.field.counterError);
+
+        this.editable.delete(0, 2);
+        assertEquals("4 / 5", this.field.getCounterText());
+        assertFalse(this.field.counterError);
+    }
+
+    @Test
+    public void staysInStepWithAFullCount() {
+
+        this.field.setMaxCharacters(1000);
+        String[] pieces = {"a", "bc", " ", "\n", "d e", "\u00E9"};
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            int length = this.editable.length();
+            int start = random.nextInt(length + 1);
+            int end = length > 0 && random.nextBoolean() ? Math.min(length, start + random.nextInt(4)) : start;
+            this.editable.replace(start, end, pieces[random.nextInt(pieces.length)]);
+
+            assertTrue(this.field.characterCountValid);
+            assertEquals(CharacterCountPolicy.DEFAULT.count(this.editable, 0, this.editable.length()),
+                    this.field.characterCount);
+        }
+    }
+
+    @Test
+    public void setTextCountsTheNewText() {
+
+        this.field.setMaxCharacters(10);
+        this.field.setText("a b c");
+        assertEquals("3 / 10", this.field.getCounterText());
+        this.field.setText("");
+        assertEquals("0 / 10", this.field.getCounterText());
+    }
+
+    @Test
+    public void countsFromScratchOnceLimitsAreSet() {
+
+        this.editable.append("abc");
+        assertFalse(this.field.characterCountValid);
+
+        this.field.setMinCharacters(5);
+        this.editable.append("d");
+        assertEquals("4 / 5+", this.field.getCounterText());
+        assertTrue(this.field.counterError);
+        assertTrue(this.field.characterCountValid);
+    }
+}
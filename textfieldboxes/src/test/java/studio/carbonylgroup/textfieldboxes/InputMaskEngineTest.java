@@ -0,0 +1,173 @@
+package studio.carbonylgroup.textfieldboxes;
+
+import android.text.Editable;
+import android.text.InputFilter;
+import android.text.Selection;
+import android.text.Spanned;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Text Field Boxes
+ * The input mask formats the Editable as it is edited, keeping the cursor and the unmasked text in step.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class InputMaskEngineTest {
+
+    private TextFieldBoxes field;
+    private Editable editable;
+
+    @Before
+    public void setUp() {
+
+        this.field = TestFields.create();
+        this.editable = this.field.getEditText().getText();
+    }
+
+    private void type(String text) {
+        for (int i = 0; i < text.length(); i++) this.editable.append(text.charAt(i));
+    }
+
+    @Test
+    public void formatsWhileTyping() {
+
+        this.field.setInputMask(InputMask.CARD_NUMBER);
+        type("4111111111111111");
+        assertEquals("4111 1111 1111 1111", this.editable.toString());
+        assertEquals("4111111111111111", this.field.getUnmaskedText());
+        assertEquals(this.editable.length(), Selection.getSelectionEnd(this.editable));
+
+        /* the mask is full */
+        type("2");
+        assertEquals("4111 1111 1111 1111", this.editable.toString());
+    }
+
+    @Test
+    public void formatsTheCurrentTextWhenSet() {
+
+        type("5551234567");
+        this.field.setInputMask(InputMask.PHONE_US);
+        assertEquals("(555) 123-4567", this.editable.toString());
+        assertEquals("5551234567", this.field.getUnmaskedText());
+    }
+
+    @Test
+    public void pastingPreformattedText() {
+
+        this.field.setInputMask(InputMask.PHONE_US);
+        this.editable.replace(0, 0, "(555) 123-4567");
+        assertEquals("(555) 123-4567", this.editable.toString());
+        assertEquals("5551234567", this.field.getUnmaskedText());
+        assertEquals(14, Selection.getSelectionEnd(this.editable));
+    }
+
+    @Test
+    public void insertingInTheMiddleKeepsTheCursorAfterIt() {
+
+        this.field.setInputMask(InputMask.CARD_NUMBER);
+        type("41111111");
+        this.editable.insert(2, "9");
+        assertEquals("4191 1111 1", this.editable.toString());
+        assertEquals("419111111", this.field.getUnmaskedText());
+        assertEquals(3, Selection.getSelectionEnd(this.editable));
+
+        /* typed right before a separator, the cursor ends up past it */
+        this.editable.insert(4, "8");
+        assertEquals("4191 8111 11", this.editable.toString());
+        assertEquals(6, Selection.getSelectionEnd(this.editable));
+    }
+
+    @Test
+    public void deletingASeparatorDeletesTheCharacterBefore() {
+
+        this.field.setInputMask(InputMask.PHONE_US);
+        type("55512");
+        assertEquals("(555) 12", this.editable.toString());
+
+        this.editable.delete(5, 6);
+        assertEquals("(551) 2", this.editable.toString());
+        assertEquals("5512", this.field.getUnmaskedText());
+        assertEquals(3, Selection.getSelectionEnd(this.editable));
+    }
+
+    @Test
+    public void digitsEqualToASeparatorAreKept() {
+
+        this.field.setInputMask(new InputMask("+7 (###) ###-####"));
+        type("7777");
+        assertEquals("+7 (777) 7", this.editable.toString());
+        assertEquals("7777", this.field.getUnmaskedText());
+
+        /* the stored digits are placed again on each edit, none is taken for the 7 of the prefix */
+        this.editable.insert(5, "1");
+        assertEquals("+7 (717) 77", this.editable.toString());
+        assertEquals("71777", this.field.getUnmaskedText());
+    }
+
+    @Test
+    public void filtersOfTheEditTextStillApply() {
+
+        /* drops the spaces, including the ones the mask writes */
+        this.field.getEditText().setFilters(new InputFilter[]{new InputFilter() {
+            @Override
+            public CharSequence filter(CharSequence source, int start, int end, Spanned dest, int dstart, int dend) {
+                return source.subSequence(start, end).toString().replace(" ", "");
+            }
+        }});
+        this.field.setInputMask(InputMask.CARD_NUMBER);
+        type("12345");
+        assertEquals("12345", this.editable.toString());
+        assertEquals("12345", this.field.getUnmaskedText());
+    }
+
+    @Test
+    public void removingTheMaskPutsTheUnmaskedTextBack() {
+
+        this.field.setInputMask(InputMask.PHONE_US);
+        type("5551234");
+        assertEquals("(555) 123-4", this.editable.toString());
+
+        this.field.setInputMask(InputMask.DATE);
+        assertEquals("55/51/234", this.editable.toString());
+        assertEquals("5551234", this.field.getUnmaskedText());
+
+        this.field.setInputMask(null);
+        assertEquals("5551234", this.editable.toString());
+        assertEquals("5551234", this.field.getUnmaskedText());
+    }
+
+    @Test
+    public void hardLimitCountsTheSeparators() {
+
+        this.field.setMaxCharacters(10);
+        this.field.setMaxCharactersHardLimit(true);
+        this.field.setInputMask(InputMask.PHONE_US);
+
+        /* the default policy counts the parentheses and the dash but not the space */
+        this.editable.replace(0, 0, "5551234567");
+        assertEquals("(555) 123-4", this.editable.toString());
+        assertEquals("5551234", this.field.getUnmaskedText());
+        assertEquals(10, this.field.obtainCharacterCount());
+
+        type("5");
+        assertEquals("(555) 123-4", this.editable.toString());
+    }
+
+    @Test
+    public void hardLimitAppliesWhenTheMaskIsSet() {
+
+        type("41111111111");
+        this.field.setMaxCharacters(8);
+        this.field.setMaxCharactersHardLimit(true);
+        this.field.setInputMask(InputMask.CARD_NUMBER);
+        assertEquals("4111 1111", this.editable.toString());
+        assertEquals("41111111", this.field.getUnmaskedText());
+    }
+}
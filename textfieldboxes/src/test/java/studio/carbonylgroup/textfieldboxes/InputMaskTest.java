@@ -0,0 +1,111 @@
+package studio.carbonylgroup.textfieldboxes;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Text Field Boxes
+ * InputMask places characters in its slots and maps formatted positions back to the unmasked text.
+ */
+public class InputMaskTest {
+
+    @Test
+    public void formatsRawText() {
+
+        assertEquals("4111 1111 1111 1111", InputMask.CARD_NUMBER.format("4111111111111111"));
+        assertEquals("(555) 123-4567", InputMask.PHONE_US.format("5551234567"));
+        assertEquals("DE89 3704 0044 0532 0130 00", InputMask.IBAN.format("DE89370400440532013000"));
+    }
+
+    @Test
+    public void separatorsComeWithTheNextCharacter() {
+
+        assertEquals("12", InputMask.DATE.format("12"));
+        assertEquals("12/3", InputMask.DATE.format("123"));
+        assertEquals("", InputMask.PHONE_US.format(""));
+        assertEquals("(5", InputMask.PHONE_US.format("5"));
+    }
+
+    @Test
+    public void keepsPreformattedText() {
+
+        assertEquals("(555) 123-4567", InputMask.PHONE_US.format("(555) 123-4567"));
+        assertEquals("4111 1111 1111 1111", InputMask.CARD_NUMBER.format("4111 1111 1111 1111"));
+        assertEquals("12/31/1999", InputMask.DATE.format("12/31/1999"));
+    }
+
+    @Test
+    public void dropsWhatFitsNoSlot() {
+
+        assertEquals("12/3", InputMask.DATE.format("12a-3"));
+        assertEquals("4111 1", InputMask.CARD_NUMBER.format("4111.1"));
+        assertEquals("1234 5678 9012 3456", InputMask.CARD_NUMBER.format("12345678901234567890"));
+    }
+
+    @Test
+    public void escapedSlotIsALiteral() {
+
+        InputMask mask = new InputMask("\\#-##");
+        assertEquals(4, mask.length());
+        assertEquals(2, mask.getSlotCount());
+        assertEquals("#-12", mask.format("12"));
+    }
+
+    @Test
+    public void fillReturnsTheCursorAfterTheCharactersBeforeIt() {
+
+        StringBuilder formatted = new StringBuilder();
+        StringBuilder unmasked = new StringBuilder();
+        assertEquals(4, InputMask.PHONE_US.fill("5551234567", 3, formatted, unmasked));
+        assertEquals("(555) 123-4567", formatted.toString());
+        assertEquals("5551234567", unmasked.toString());
+
+        /* past the separators, right after the character that follows them */
+        formatted.setLength(0);
+        assertEquals(7, InputMask.PHONE_US.fill("5551234567", 4, formatted, null));
+        assertEquals(0, InputMask.PHONE_US.fill("5551234567", 0, formatted, null));
+    }
+
+    @Test
+    public void digitNextToADigitSeparator() {
+
+        assertEquals("+7 (791) 2", new InputMask("+7 (###) ###-####").format("7912"));
+        assertEquals("+44 4", new InputMask("+44 ####").format("4"));
+        assertEquals("+44 4412", new InputMask("+44 ####").format("4412"));
+        assertEquals("+1 (1", new InputMask("+1 (###) ###-####").format("1"));
+
+        /* the unmasked text fills the mask again the same way */
+        StringBuilder formatted = new StringBuilder();
+        StringBuilder unmasked = new StringBuilder();
+        new InputMask("+7 (###) ###-####").fill("7777", 4, formatted, unmasked);
+        assertEquals("+7 (777) 7", formatted.toString());
+        assertEquals("7777", unmasked.toString());
+    }
+
+    @Test
+    public void fillDropsTypedSeparators() {
+
+        StringBuilder formatted = new StringBuilder();
+        StringBuilder unmasked = new StringBuilder();
+        assertEquals(7, InputMask.CARD_NUMBER.fill("4111 11", 7, formatted, unmasked));
+        assertEquals("4111 11", formatted.toString());
+        assertEquals("411111", unmasked.toString());
+    }
+
+    @Test
+    public void unmaskedLengthAcrossSeparators() {
+
+        InputMask mask = InputMask.PHONE_US;
+        assertEquals(10, mask.getSlotCount());
+        assertEquals(14, mask.length());
+        assertEquals(0, mask.unmaskedLength(0));
+        assertEquals(0, mask.unmaskedLength(1));
+        assertEquals(3, mask.unmaskedLength(4));
+        assertEquals(3, mask.unmaskedLength(5));
+        assertEquals(3, mask.unmaskedLength(6));
+        assertEquals(4, mask.unmaskedLength(7));
+        assertEquals(10, mask.unmaskedLength(14));
+        assertEquals(10, mask.unmaskedLength(20));
+    }
+}
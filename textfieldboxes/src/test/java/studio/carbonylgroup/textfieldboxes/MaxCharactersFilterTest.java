@@ -0,0 +1,99 @@
+package studio.carbonylgroup.textfieldboxes;
+
+import android.text.Editable;
+import android.text.SpannableStringBuilder;
+import android.view.inputmethod.BaseInputConnection;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Text Field Boxes
+ * The hard limit truncates what goes into the Editable, counted as the counter counts it.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class MaxCharactersFilterTest {
+
+    private TextFieldBoxes field;
+    private Editable editable;
+
+    @Before
+    public void setUp() {
+
+        this.field = TestFields.create();
+        this.field.setMaxCharacters(5);
+        this.field.setMaxCharactersHardLimit(true);
+        this.editable = this.field.getEditText().getText();
+    }
+
+    @Test
+    public void truncatesAnInsertGoingOver() {
+
+        this.editable.append("abcdefgh");
+        assertEquals("abcde", this.editable.toString());
+        this.editable.append("i");
+        assertEquals("abcde", this.editable.toString());
+    }
+
+    @Test
+    public void spacesAndLineFeedsAreNotCounted() {
+
+        this.editable.append("ab cd\nefgh");
+        assertEquals("ab cd\ne", this.editable.toString());
+
+        /* they can still be added once the limit is reached */
+        this.editable.append(" \n");
+        assertEquals("ab cd\ne \n", this.editable.toString());
+        assertEquals(5, this.field.obtainCharacterCount());
+    }
+
+    @Test
+    public void truncatesAnInsertInTheMiddle() {
+
+        this.editable.append("abc");
+        this.editable.insert(1, "WXYZ");
+        assertEquals("aWXbc", this.editable.toString());
+    }
+
+    @Test
+    public void countsTheReplacedRangeAsFreed() {
+
+        this.editable.append("abcde");
+        this.editable.replace(1, 3, "WXYZ");
+        assertEquals("aWXde", this.editable.toString());
+    }
+
+    @Test
+    public void doesNotCutASurrogatePair() {
+
+        this.editable.append("abcd");
+        this.editable.append("\uD83D\uDE00");
+        assertEquals("abcd", this.editable.toString());
+
+        this.editable.clear();
+        this.field.setCharacterCountPolicy(CharacterCountPolicy.CODE_POINTS);
+        this.editable.append("abcd\uD83D\uDE00e");
+        assertEquals("abcd\uD83D\uDE00", this.editable.toString());
+    }
+
+    @Test
+    public void composingTextIsTruncatedOnceCommitted() {
+
+        this.editable.append("abc");
+
+        SpannableStringBuilder composing = new SpannableStringBuilder("defgh");
+        BaseInputConnection.setComposingSpans(composing);
+        this.editable.append(composing);
+        assertEquals("abcdefgh", this.editable.toString());
+
+        /* the IME commits by replacing the composing region with the final text */
+        this.editable.replace(3, 8, "DEFGH");
+        assertEquals("abcDE", this.editable.toString());
+    }
+}
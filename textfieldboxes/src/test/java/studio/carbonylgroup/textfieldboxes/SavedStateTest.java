@@ -0,0 +1,97 @@
+package studio.carbonylgroup.textfieldboxes;
+
+import android.os.Parcelable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Text Field Boxes
+ * Restoring the saved state puts the text, focus and cursor back without reporting them
+ * to the text change subscriptions, and to the form only when the text differs.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class SavedStateTest {
+
+    private TextFieldBoxes restored;
+    private CountingForm form;
+    private int deliveries;
+
+    /**
+     * counts the text changes its fields report
+     */
+    private static class CountingForm extends TextFieldBoxesForm {
+
+        int textChanges = 0;
+
+        @Override
+        protected void onFieldTextChanged(int index) {
+
+            super.onFieldTextChanged(index);
+            this.textChanges++;
+        }
+    }
+
+    @Before
+    public void setUp() {
+
+        this.restored = TestFields.create();
+        this.form = new CountingForm();
+        this.form.add(this.restored);
+        this.restored.subscribeTextChanges(new TextChangeSubscription.Listener() {
+            @Override
+            public void onTextChange(String text) {
+                deliveries++;
+            }
+        });
+    }
+
+    private static Parcelable saveFocused(String text) {
+
+        TextFieldBoxes original = TestFields.create(text);
+        original.getEditText().requestFocus();
+        assertTrue(original.getEditText().hasFocus());
+        return original.onSaveInstanceState();
+    }
+
+    @Test
+    public void focusedEmptyFieldReportsNothing() {
+
+        this.restored.onRestoreInstanceState(saveFocused(""));
+        assertTrue(this.restored.getEditText().hasFocus());
+        assertEquals("", this.restored.getText());
+        assertEquals(0, this.form.textChanges);
+        assertEquals(0, this.deliveries);
+    }
+
+    @Test
+    public void restoredTextOnlyMarksTheFormValue() {
+
+        this.restored.onRestoreInstanceState(saveFocused("abc"));
+        assertTrue(this.restored.getEditText().hasFocus());
+        assertEquals("abc", this.restored.getText());
+        assertEquals("abc", this.form.getValue(0));
+        assertEquals(1, this.form.textChanges);
+        assertEquals(0, this.deliveries);
+    }
+
+    @Test
+    public void sameTextReportsNothing() {
+
+        this.restored.setText("abc");
+        this.form.textChanges = 0;
+        this.deliveries = 0;
+
+        this.restored.onRestoreInstanceState(saveFocused("abc"));
+        assertEquals("abc", this.restored.getText());
+        assertEquals(0, this.form.textChanges);
+        assertEquals(0, this.deliveries);
+    }
+}
@@ -0,0 +1,35 @@
+package studio.carbonylgroup.textfieldboxes;
+
+import android.content.Context;
+import android.view.ContextThemeWrapper;
+
+import org.robolectric.Robolectric;
+import org.robolectric.RuntimeEnvironment;
+
+/**
+ * Text Field Boxes
+ * Builds inflated fields for the Robolectric tests, as a layout would.
+ */
+final class TestFields {
+
+    private TestFields() {
+    }
+
+    static Context createContext() {
+        return new ContextThemeWrapper(RuntimeEnvironment.application, R.style.Theme_AppCompat_Light);
+    }
+
+    static TextFieldBoxes create() {
+
+        TextFieldBoxes field = new TextFieldBoxes(createContext(), Robolectric.buildAttributeSet().build());
+        field.onFinishInflate();
+        return field;
+    }
+
+    static TextFieldBoxes create(String text) {
+
+        TextFieldBoxes field = create();
+        field.setText(text);
+        return field;
+    }
+}
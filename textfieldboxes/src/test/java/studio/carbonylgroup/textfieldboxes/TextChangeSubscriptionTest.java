@@ -0,0 +1,109 @@
+package studio.carbonylgroup.textfieldboxes;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Text Field Boxes
+ * Each change is delivered once to the subscriptions there were when it happened,
+ * even if the listeners subscribe or unsubscribe while it is delivered.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class TextChangeSubscriptionTest {
+
+    private TextFieldBoxes field;
+
+    /**
+     * counts the deliveries, without debounce nor throttle they happen right away
+     */
+    private static class Counter implements TextChangeSubscription.Listener {
+
+        int deliveries = 0;
+
+        @Override
+        public void onTextChange(String text) {
+            this.deliveries++;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        this.field = TestFields.create();
+    }
+
+    @Test
+    public void unsubscribingAnotherDuringDelivery() {
+
+        final Counter first = new Counter();
+        final TextChangeSubscription firstSubscription = this.field.subscribeTextChanges(first);
+        final Counter second = new Counter() {
+            @Override
+            public void onTextChange(String text) {
+                super.onTextChange(text);
+                firstSubscription.unsubscribe();
+            }
+        };
+        this.field.subscribeTextChanges(second);
+
+        this.field.getEditText().getText().append("a");
+        assertEquals(1, first.deliveries);
+        assertEquals(1, second.deliveries);
+        assertFalse(firstSubscription.isSubscribed());
+
+        this.field.getEditText().getText().append("b");
+        assertEquals(1, first.deliveries);
+        assertEquals(2, second.deliveries);
+    }
+
+    @Test
+    public void unsubscribingItselfDuringDelivery() {
+
+        final Counter second = new Counter();
+        final TextChangeSubscription[] firstSubscription = new TextChangeSubscription[1];
+        Counter first = new Counter() {
+            @Override
+            public void onTextChange(String text) {
+                super.onTextChange(text);
+                firstSubscription[0].unsubscribe();
+            }
+        };
+        firstSubscription[0] = this.field.subscribeTextChanges(first);
+        this.field.subscribeTextChanges(second);
+
+        this.field.getEditText().getText().append("a");
+        assertEquals(1, first.deliveries);
+        assertEquals(1, second.deliveries);
+    }
+
+    @Test
+    public void subscribingDuringDelivery() {
+
+        final Counter late = new Counter();
+        Counter first = new Counter() {
+            @Override
+            public void onTextChange(String text) {
+                super.onTextChange(text);
+                if (this.deliveries == 1) field.subscribeTextChanges(late);
+            }
+        };
+        this.field.subscribeTextChanges(first);
+        Counter second = new Counter();
+        this.field.subscribeTextChanges(second);
+
+        this.field.getEditText().getText().append("a");
+        assertEquals(1, second.deliveries);
+        assertEquals(0, late.deliveries);
+
+        this.field.getEditText().getText().append("b");
+        assertEquals(2, first.deliveries);
+        assertEquals(2, second.deliveries);
+        assertEquals(1, late.deliveries);
+    }
+}
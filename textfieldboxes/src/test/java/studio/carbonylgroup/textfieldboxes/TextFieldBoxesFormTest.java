@@ -0,0 +1,98 @@
+package studio.carbonylgroup.textfieldboxes;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Text Field Boxes
+ * TextFieldBoxesForm keeps its bitsets and values in step with the fields, across removals too.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class TextFieldBoxesFormTest {
+
+    @Test
+    public void removeFirstShiftsTheFollowingFields() {
+
+        TextFieldBoxes first = TestFields.create("first");
+        TextFieldBoxes second = TestFields.create("second");
+        TextFieldBoxes third = TestFields.create("third");
+        TextFieldBoxesForm form = new TextFieldBoxesForm();
+        form.addAll(first, second, third);
+        first.setError("first");
+        third.setError("third");
+        assertEquals(Arrays.asList("first", "second", "third"), form.values());
+
+        form.remove(first);
+        assertEquals(2, form.size());
+        assertEquals(-1, first.formIndex);
+        assertEquals(0, second.formIndex);
+        assertEquals(1, third.formIndex);
+        assertEquals(1, form.getInvalidCount());
+        assertSame(third, form.firstInvalid());
+        assertEquals(Arrays.asList("second", "third"), form.values());
+
+        /* the removed field doesn't report anymore, the shifted ones report at their new index */
+        first.setError("first again");
+        assertEquals(1, form.getInvalidCount());
+        second.setError("second");
+        assertSame(second, form.firstInvalid());
+        third.setText("changed");
+        assertEquals("changed", form.getValue(1));
+        assertSame(second, form.firstInvalid());
+        assertEquals(1, form.getInvalidCount());
+    }
+
+    @Test
+    public void removeMiddleKeepsTheStaleValuesOfTheFollowingFields() {
+
+        TextFieldBoxes first = TestFields.create("first");
+        TextFieldBoxes second = TestFields.create("second");
+        TextFieldBoxes third = TestFields.create("third");
+        TextFieldBoxesForm form = new TextFieldBoxesForm();
+        form.addAll(first, second, third);
+        form.values();
+
+        third.setText("changed");
+        form.remove(second);
+        assertEquals(Arrays.asList("first", "changed"), form.values());
+
+        third.setError("third");
+        form.remove(third);
+        assertTrue(form.isValid());
+        assertNull(form.firstInvalid());
+        assertEquals(Arrays.asList("first"), form.values());
+    }
+
+    @Test
+    public void disabledFieldIsSkipped() {
+
+        TextFieldBoxes field = TestFields.create("");
+        field.setMaxCharacters(3);
+        field.setText("too long");
+        TextFieldBoxesForm form = new TextFieldBoxesForm();
+        form.add(field);
+        assertFalse(form.isValid());
+
+        field.setEnabled(false);
+        assertTrue(form.isValid());
+        field.setEnabled(true);
+        assertFalse(form.isValid());
+
+        field.setEnabled(false);
+        form.remove(field);
+        TextFieldBoxesForm other = new TextFieldBoxesForm();
+        other.add(field);
+        assertTrue(other.isValid());
+    }
+}